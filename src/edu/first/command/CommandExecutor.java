@@ -0,0 +1,359 @@
+package edu.first.command;
+
+import edu.first.util.log.Logger;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs commands on a fixed pool of threads that are started ahead of time,
+ * instead of creating a new thread for every command. This is what
+ * {@link Commands#runInNewThread(Command)},
+ * {@link Commands#runInNewThreadAndWait(Command)},
+ * {@link edu.first.commands.ThreadedCommand} and
+ * {@link edu.first.commands.ConcurrentCommandGroup} use.
+ *
+ * <p>
+ * The pool threads are daemon threads at {@link Thread#NORM_PRIORITY}, below
+ * the {@link edu.first.module.controllers.ControlLoopScheduler control loop}
+ * thread. When every thread is busy, commands wait in a queue. When the queue
+ * is full as well, the command is run on a new overflow thread (and a warning
+ * is logged), so that giving a command never runs it on the thread that gave
+ * it. A pool that overflows often should be made bigger with
+ * {@link #setPoolSize(int)}.
+ *
+ * <p>
+ * When a pool thread waits for a command that has not started yet, the command
+ * is run on the waiting thread instead (see {@link #await(CommandHandle)}).
+ * Commands that wait for other commands, like nested concurrent groups, cannot
+ * deadlock the pool this way. Other threads (like the scheduler or the main
+ * thread) never run commands that they wait for, they only wait.
+ *
+ * <p>
+ * On runtimes that have virtual threads (Java 21 and later), the executor can
+ * instead run every command on its own virtual thread with
+ * {@link #setVirtualThreads(boolean)}. Blocking commands like
+ * {@link edu.first.commands.common.WaitCommand} then cost almost nothing while
+ * they wait, so there is no limit on how many run at once. Turning it off (or
+ * running on an older runtime) uses the pool.
+ *
+ * <p>
+ * Every command that is given to the executor can be cancelled through its
+ * {@link CommandHandle}, or all at once with {@link #cancelAll()}. Commands
+ * given after a {@link #mark()} can be cancelled together with
+ * {@link #cancelSince(long)}, which leaves older ones running. Commands that
+ * are given by a running command belong to the same mark as that command.
+ *
+ * <p>
+ * Exceptions thrown by commands are logged, and do not stop the thread.
+ *
+ * @since October 18 26
+ * @author Joel Gallant
+ */
+public final class CommandExecutor {
+
+    private static final int QUEUE_SIZE = 256;
+    private static final Object defaultLock = new Object();
+    private static CommandExecutor defaultExecutor;
+    private static final Method newVirtualExecutor = findVirtualExecutor();
+    // executor that owns the current thread, for threads that run commands
+    private static final ThreadLocal<CommandExecutor> owner = new ThreadLocal<>();
+    private final ThreadPoolExecutor pool;
+    private final AtomicInteger overflowed = new AtomicInteger();
+    private final AtomicLong mark = new AtomicLong();
+    private volatile ExecutorService virtual;
+    private final Set<CommandHandle> running
+            = Collections.newSetFromMap(new ConcurrentHashMap<CommandHandle, Boolean>());
+
+    /**
+     * Returns the executor that the command library uses. It has 8 threads by
+     * default, which can be changed with {@link #setPoolSize(int)}.
+     *
+     * @return the shared executor
+     */
+    public static CommandExecutor getInstance() {
+        synchronized (defaultLock) {
+            if (defaultExecutor == null) {
+                defaultExecutor = new CommandExecutor("Command", 8, Thread.NORM_PRIORITY);
+            }
+            return defaultExecutor;
+        }
+    }
+
+    /**
+     * Constructs an executor with its own pool of threads. All threads are
+     * started right away.
+     *
+     * @throws IllegalArgumentException when threads is less than 1
+     * @param name prefix for the names of the threads
+     * @param threads how many threads are in the pool
+     * @param priority priority of the threads
+     */
+    public CommandExecutor(final String name, int threads, final int priority) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(threads + " is not a valid amount of threads");
+        }
+        pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(QUEUE_SIZE), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        return newWorker(r, name + " " + count.getAndIncrement(), priority);
+                    }
+                }, new RejectedExecutionHandler() {
+                    @Override
+                    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                        if (executor.isShutdown()) {
+                            throw new RejectedExecutionException("Executor " + name + " is shut down");
+                        }
+                        Logger.getLogger(CommandExecutor.this).warn("Every " + name
+                                + " thread is busy and the queue is full, running " + r + " on a new thread");
+                        newWorker(r, name + " overflow " + overflowed.getAndIncrement(), priority).start();
+                    }
+                });
+        pool.prestartAllCoreThreads();
+    }
+
+    // a thread that runs commands of this executor, and can run what it waits for
+    private Thread newWorker(final Runnable r, String name, int priority) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                owner.set(CommandExecutor.this);
+                r.run();
+            }
+        }, name);
+        thread.setPriority(priority);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Changes how many threads are in the pool. New threads are started right
+     * away, and extra threads stop once they finish what they are running.
+     *
+     * @throws IllegalArgumentException when threads is less than 1
+     * @param threads how many threads are in the pool
+     */
+    public void setPoolSize(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(threads + " is not a valid amount of threads");
+        }
+        synchronized (pool) {
+            if (threads > pool.getMaximumPoolSize()) {
+                pool.setMaximumPoolSize(threads);
+                pool.setCorePoolSize(threads);
+            } else {
+                pool.setCorePoolSize(threads);
+                pool.setMaximumPoolSize(threads);
+            }
+        }
+        pool.prestartAllCoreThreads();
+    }
+
+    /**
+     * Returns whether this runtime supports virtual threads.
+     *
+     * @return if virtual threads can be used
+     */
+    public static boolean isVirtualThreadsAvailable() {
+        return newVirtualExecutor != null;
+    }
+
+    /**
+     * Sets whether commands are run on virtual threads instead of the pool.
+     * If this runtime does not support virtual threads, commands keep using
+     * the pool. Commands that are already running are not affected.
+     *
+     * @param virtualThreads if commands should be run on virtual threads
+     * @return if commands are now run on virtual threads
+     */
+    public boolean setVirtualThreads(boolean virtualThreads) {
+        synchronized (pool) {
+            if (virtualThreads && virtual == null && newVirtualExecutor != null) {
+                try {
+                    virtual = (ExecutorService) newVirtualExecutor.invoke(null);
+                } catch (ReflectiveOperationException | RuntimeException ex) {
+                    Logger.getLogger(this).error("Virtual threads could not be started", ex);
+                }
+            } else if (!virtualThreads && virtual != null) {
+                // running commands finish, no more are accepted
+                virtual.shutdown();
+                virtual = null;
+            }
+            return virtual != null;
+        }
+    }
+
+    /**
+     * Returns whether commands are run on virtual threads.
+     *
+     * @return if virtual threads are used
+     */
+    public boolean isVirtualThreads() {
+        return virtual != null;
+    }
+
+    /**
+     * Returns how many threads are in the pool.
+     *
+     * @return size of the pool
+     */
+    public int getPoolSize() {
+        return pool.getCorePoolSize();
+    }
+
+    /**
+     * Starts running the command on a pool thread (or a virtual thread). Does
+     * not wait for it to finish.
+     *
+     * @throws NullPointerException when command is null
+     * @param command command to run
+     * @return the running command, to wait for or cancel
+     */
+    public CommandHandle submit(Command command) {
+        if (command == null) {
+            throw new NullPointerException("Null command given");
+        }
+        CommandHandle parent = CommandHandle.current();
+        long m = parent != null && parent.getExecutor() == this ? parent.getMark() : mark.get();
+        CommandHandle task = new CommandHandle(this, command, new Task(command), m);
+        running.add(task);
+        ExecutorService v = virtual;
+        if (v != null) {
+            try {
+                v.execute(task);
+                return task;
+            } catch (RejectedExecutionException ex) {
+                // turned off at the same time, use the pool instead
+            }
+        }
+        pool.execute(task);
+        return task;
+    }
+
+    /**
+     * Waits until a command given to {@link #submit(Command)} is done (or
+     * cancelled). If this is one of the executor's threads and the command has
+     * not been started by the pool yet, it is run on this thread instead, so
+     * that the pool cannot run out of threads that are all waiting.
+     *
+     * @throws InterruptedException when thread is interrupted while waiting
+     * @param task the running command
+     */
+    public void await(CommandHandle task) throws InterruptedException {
+        if (owner.get() == this && pool.remove(task)) {
+            task.run();
+        }
+        try {
+            task.get();
+        } catch (CancellationException ex) {
+            // done, but never finished
+        } catch (ExecutionException ex) {
+            // commands log their own exceptions in Task
+            Logger.getLogger(this).error("Command failed", ex);
+        }
+    }
+
+    /**
+     * Cancels every command that has been given to this executor and is not
+     * done.
+     *
+     * @see CommandHandle#cancel()
+     * @see #cancelSince(long)
+     */
+    public void cancelAll() {
+        for (CommandHandle task : running) {
+            task.cancel();
+        }
+    }
+
+    /**
+     * Starts a new group of commands. Commands that are given to the executor
+     * after this belong to the returned mark, and can be cancelled together
+     * with {@link #cancelSince(long)}.
+     *
+     * @return mark of commands that are given from now on
+     */
+    public long mark() {
+        return mark.incrementAndGet();
+    }
+
+    /**
+     * Cancels every command that is not done and was given to this executor
+     * since the {@link #mark()} that returned {@code mark}. Commands that were
+     * given before it keep running. {@link edu.first.main.GamePeriods} does
+     * this for the shared executor whenever the game mode changes, so that
+     * commands from the last mode stop driving the robot, while commands that
+     * were started in {@code robotInit} keep running.
+     *
+     * @param mark value returned by {@link #mark()}
+     * @see CommandHandle#cancel()
+     */
+    public void cancelSince(long mark) {
+        for (CommandHandle task : running) {
+            if (task.getMark() >= mark) {
+                task.cancel();
+            }
+        }
+    }
+
+    // called by CommandHandle when it is done
+    void remove(CommandHandle task) {
+        running.remove(task);
+        pool.remove(task);
+    }
+
+    /**
+     * Runs the command on a pool thread and waits for it to finish.
+     *
+     * @throws NullPointerException when command is null
+     * @throws InterruptedException when thread is interrupted while waiting
+     * @param command command to run
+     */
+    public void runAndWait(Command command) throws InterruptedException {
+        await(submit(command));
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor(), if this runtime has it
+    private static Method findVirtualExecutor() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException | SecurityException ex) {
+            return null;
+        }
+    }
+
+    // logs exceptions instead of hiding them in the future
+    private static final class Task implements Runnable {
+
+        private final Command command;
+
+        Task(Command command) {
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Commands.run(command);
+            } catch (RuntimeException ex) {
+                Logger.getLogger(CommandExecutor.class).error("Command " + command + " failed", ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package edu.first.command;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A command that was given to a {@link CommandExecutor}. The handle can wait
+ * for the command to finish, or stop it.
+ *
+ * <p>
+ * Cancelling a command interrupts the thread that runs it. The commands in the
+ * library (waits, loops and groups) stop as soon as they see the interrupt, and
+ * groups cancel every command inside of them, so cancelling a whole
+ * autonomous routine stops everything it started. Other commands should check
+ * {@link Thread#isInterrupted()} if they run for a long time. Only the thread
+ * that is running the command is interrupted, and the interrupt is cleared
+ * once the command returns, so it never leaks into whatever that thread does
+ * next (like a pool thread's next command).
+ *
+ * @since October 18 26
+ * @author Joel Gallant
+ */
+public final class CommandHandle extends FutureTask<Void> {
+
+    // handle of the command that the current thread is running
+    private static final ThreadLocal<CommandHandle> current = new ThreadLocal<>();
+    private final CommandExecutor executor;
+    private final Command command;
+    private final long mark;
+    // uses lock so user can't lock handle accidentally using "this"
+    private final Object lock = new Object();
+    // thread that is running the command, or null
+    private Thread runner;
+    // whether runner was interrupted by cancel()
+    private boolean interrupted;
+
+    CommandHandle(CommandExecutor executor, Command command, Runnable task, long mark) {
+        super(task, null);
+        this.executor = executor;
+        this.command = command;
+        this.mark = mark;
+    }
+
+    // handle that the current thread is running, or null
+    static CommandHandle current() {
+        return current.get();
+    }
+
+    // executor that the command was given to
+    CommandExecutor getExecutor() {
+        return executor;
+    }
+
+    // value of CommandExecutor.mark() when the command (or its parent) was given
+    long getMark() {
+        return mark;
+    }
+
+    /**
+     * Returns the command that is being run.
+     *
+     * @return command of this handle
+     */
+    public Command getCommand() {
+        return command;
+    }
+
+    /**
+     * Stops the command. If it has not started, it never will. If it is
+     * running, its thread is interrupted.
+     *
+     * @return false if the command was already done
+     */
+    public boolean cancel() {
+        return cancel(true);
+    }
+
+    /**
+     * Stops the command. If it has not started, it never will. If it is
+     * running and {@code mayInterruptIfRunning} is true, the thread that is
+     * running it is interrupted until the command returns.
+     *
+     * @param mayInterruptIfRunning if the running thread should be interrupted
+     * @return false if the command was already done
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!super.cancel(false)) {
+            return false;
+        }
+        if (mayInterruptIfRunning) {
+            synchronized (lock) {
+                if (runner != null) {
+                    interrupted = true;
+                    runner.interrupt();
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs the command on this thread, unless it was already started or
+     * cancelled.
+     */
+    @Override
+    public void run() {
+        synchronized (lock) {
+            if (runner != null) {
+                // already being run by another thread
+                return;
+            }
+            runner = Thread.currentThread();
+        }
+        CommandHandle parent = current.get();
+        current.set(this);
+        try {
+            super.run();
+        } finally {
+            current.set(parent);
+            synchronized (lock) {
+                runner = null;
+                if (interrupted) {
+                    // clears the interrupt that cancel() caused
+                    interrupted = false;
+                    Thread.interrupted();
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until the command is done (or cancelled). If this is a thread of
+     * the executor and the command has not been started yet, it is run on this
+     * thread instead.
+     *
+     * @throws InterruptedException when thread is interrupted while waiting
+     */
+    public void await() throws InterruptedException {
+        executor.await(this);
+    }
+
+    /**
+     * Waits until the command is done (or cancelled), for at most the given
+     * time. The command keeps running if the time runs out.
+     *
+     * @throws InterruptedException when thread is interrupted while waiting
+     * @param seconds longest time to wait
+     * @return if the command is done
+     */
+    public boolean await(double seconds) throws InterruptedException {
+        try {
+            get((long) (seconds * 1e9), TimeUnit.NANOSECONDS);
+        } catch (CancellationException | ExecutionException ex) {
+            // done either way
+        } catch (TimeoutException ex) {
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    protected void done() {
+        executor.remove(this);
+    }
+
+    @Override
+    public String toString() {
+        return command.toString();
+    }
+}
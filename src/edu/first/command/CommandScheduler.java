@@ -0,0 +1,460 @@
+package edu.first.command;
+
+import edu.first.module.Module;
+import edu.first.util.log.Logger;
+import java.util.ArrayList;
+
+/**
+ * Runs commands cooperatively on a single thread. Every call to {@link #run()}
+ * is one tick, where each scheduled command is stepped once (see
+ * {@link CooperativeCommand}). {@link edu.first.main.GamePeriods} runs the
+ * scheduler in every periodic method, so scheduled commands are stepped at the
+ * rate of the driverstation packets.
+ *
+ * <p>
+ * Commands that are not {@link CooperativeCommand cooperative} are adapted with
+ * {@link Commands#asCooperative(Command)}, which runs them on the
+ * {@link CommandExecutor} and finishes them on the first tick after they are
+ * done. They never block the scheduler, but they run on another thread, so
+ * commands that should be stepped with the rest should be cooperative.
+ *
+ * <p>
+ * Commands that are {@link RequiringCommand requiring commands} are only run
+ * when no other command is using their modules. Scheduling one cancels the
+ * commands using the same modules, or is rejected if one of them cannot be
+ * interrupted. Each module can also have a
+ * {@link #setDefaultCommand(Module, Command) default command}, which is
+ * started whenever no other command is using it. Groups require every module
+ * that the commands inside of them require.
+ *
+ * <p>
+ * A tick does not create threads or allocate (apart from handing commands that
+ * are not cooperative to the executor), so its cost only depends on the
+ * commands that are running. Commands can be scheduled and cancelled from any
+ * thread, including from inside of a running command.
+ *
+ * @since October 18 26
+ * @author Joel Gallant
+ */
+public final class CommandScheduler {
+
+    private static final CommandScheduler instance = new CommandScheduler();
+    // uses lock so user can't lock scheduler accidentally using "this"
+    private final Object lock = new Object();
+    private final ArrayList<Entry> pending = new ArrayList<>();
+    private final ArrayList<Entry> running = new ArrayList<>();
+    private final ArrayList<Module> defaultModules = new ArrayList<>();
+    private final ArrayList<Command> defaultCommands = new ArrayList<>();
+    private boolean stepping;
+    // set while commands are being ended, so that ending one does not re-enter
+    private boolean ending;
+    private volatile double period = 0.02;
+
+    /**
+     * Returns the scheduler that is run by {@link edu.first.main.GamePeriods}.
+     *
+     * @return shared scheduler
+     */
+    public static CommandScheduler getInstance() {
+        return instance;
+    }
+
+    /**
+     * Constructs an empty scheduler. Most robots use the
+     * {@link #getInstance() shared scheduler} instead, but any scheduler works
+     * as long as something calls its {@link #run()} method.
+     */
+    public CommandScheduler() {
+    }
+
+    /**
+     * Sets how often {@link #run()} is expected to be called. The scheduler
+     * does not run itself, so this does not change when ticks happen. It is
+     * used by commands that need the rate of ticks when they are run outside
+     * of the scheduler, like
+     * {@link edu.first.commands.common.PacedLoopingCommand}. Defaults to 20
+     * milliseconds, the rate of the periodic methods in
+     * {@link edu.first.main.GamePeriods}.
+     *
+     * @throws IllegalArgumentException when seconds is not positive
+     * @param seconds time between every tick
+     */
+    public void setPeriod(double seconds) {
+        if (!(seconds > 0)) {
+            throw new IllegalArgumentException(seconds + " is not a valid period");
+        }
+        this.period = seconds;
+    }
+
+    /**
+     * Returns how often {@link #run()} is expected to be called.
+     *
+     * @return seconds between every tick
+     * @see #setPeriod(double)
+     */
+    public double getPeriod() {
+        return period;
+    }
+
+    /**
+     * Starts running the command on the next tick. If it is a
+     * {@link RequiringCommand}, commands that are using the same modules are
+     * cancelled. If one of those cannot be interrupted, this command is not
+     * scheduled instead.
+     *
+     * @throws NullPointerException when command is null
+     * @param command command to run
+     * @return if the command was scheduled
+     */
+    public boolean schedule(Command command) {
+        if (command == null) {
+            throw new NullPointerException("Null command given");
+        }
+        Entry entry = new Entry(command, Commands.asCooperative(command), Commands.getRequirements(command),
+                !(command instanceof RequiringCommand) || ((RequiringCommand) command).isInterruptible());
+        synchronized (lock) {
+            return add(entry);
+        }
+    }
+
+    /**
+     * Schedules the command after a delay. No thread or tick is used while
+     * waiting, the delay is kept by the
+     * {@link TimerWheel#getInstance() timer wheel}.
+     *
+     * @throws NullPointerException when command is null
+     * @param command command to run
+     * @param seconds time to wait before scheduling the command
+     * @return timer that can be cancelled before the command is scheduled
+     * @see #schedule(Command)
+     */
+    public TimerWheel.Timeout scheduleLater(final Command command, double seconds) {
+        if (command == null) {
+            throw new NullPointerException("Null command given");
+        }
+        return TimerWheel.getInstance().schedule(new Runnable() {
+            @Override
+            public void run() {
+                schedule(command);
+            }
+        }, seconds);
+    }
+
+    /**
+     * Sets the command that is run whenever no other command is using the
+     * module. It is always interrupted when another command needs the module.
+     * Default commands usually never finish, but if one does, it is started
+     * again on the next tick.
+     *
+     * <p>
+     * A default command can only require the module that it is the default
+     * of, so that starting it can never be rejected.
+     *
+     * @throws NullPointerException when module is null
+     * @throws IllegalArgumentException when command requires another module
+     * @param module module that the command uses
+     * @param command command to run by default, or null for none
+     */
+    public void setDefaultCommand(Module module, Command command) {
+        if (module == null) {
+            throw new NullPointerException("Null module given");
+        }
+        if (command != null) {
+            for (Module required : Commands.getRequirements(command)) {
+                if (required != module) {
+                    throw new IllegalArgumentException(command + " is not a valid default command for " + module
+                            + ", it requires " + required);
+                }
+            }
+        }
+        synchronized (lock) {
+            int i = defaultModules.indexOf(module);
+            if (i >= 0) {
+                Entry owner = owner(module);
+                if (owner != null && owner.command == defaultCommands.get(i)) {
+                    owner.cancelled = true;
+                }
+                defaultModules.remove(i);
+                defaultCommands.remove(i);
+            }
+            if (command != null) {
+                defaultModules.add(module);
+                defaultCommands.add(command);
+            }
+            if (!stepping) {
+                removeDone();
+            }
+        }
+    }
+
+    /**
+     * Returns the command that is run whenever no other command is using the
+     * module.
+     *
+     * @param module module that the command uses
+     * @return default command, or null if there is none
+     */
+    public Command getDefaultCommand(Module module) {
+        synchronized (lock) {
+            int i = defaultModules.indexOf(module);
+            return i >= 0 ? defaultCommands.get(i) : null;
+        }
+    }
+
+    /**
+     * Returns the command that is using the module.
+     *
+     * @param module module to check
+     * @return command using the module, or null if none are
+     */
+    public Command getRequiring(Module module) {
+        synchronized (lock) {
+            Entry owner = owner(module);
+            return owner == null ? null : owner.command;
+        }
+    }
+
+    /**
+     * Returns whether the command is scheduled or running.
+     *
+     * @param command command to check for
+     * @return if command is in the scheduler
+     */
+    public boolean isScheduled(Command command) {
+        synchronized (lock) {
+            return find(pending, command) != null || find(running, command) != null;
+        }
+    }
+
+    /**
+     * Stops the command. If it was running, it is
+     * {@link CooperativeCommand#end(boolean) ended} as interrupted.
+     *
+     * @param command command to stop
+     */
+    public void cancel(Command command) {
+        synchronized (lock) {
+            Entry e;
+            while ((e = find(pending, command)) != null) {
+                e.cancelled = true;
+            }
+            while ((e = find(running, command)) != null) {
+                e.cancelled = true;
+            }
+            if (!stepping) {
+                removeDone();
+            }
+        }
+    }
+
+    /**
+     * Stops every command. Commands that were running are
+     * {@link CooperativeCommand#end(boolean) ended} as interrupted.
+     */
+    public void cancelAll() {
+        synchronized (lock) {
+            for (int x = 0; x < pending.size(); x++) {
+                pending.get(x).cancelled = true;
+            }
+            for (int x = 0; x < running.size(); x++) {
+                running.get(x).cancelled = true;
+            }
+            if (!stepping) {
+                removeDone();
+            }
+        }
+    }
+
+    /**
+     * Runs one tick. Default commands are scheduled for modules that are not
+     * being used. Commands that were scheduled since the last tick are
+     * initialized, then every running command is executed once and ended if
+     * it has finished.
+     */
+    public void run() {
+        synchronized (lock) {
+            if (stepping) {
+                // run from inside of a command
+                return;
+            }
+            stepping = true;
+            try {
+                for (int x = 0; x < defaultModules.size(); x++) {
+                    Module module = defaultModules.get(x);
+                    if (owner(module) == null) {
+                        Command command = defaultCommands.get(x);
+                        add(new Entry(command, Commands.asCooperative(command),
+                                withModule(Commands.getRequirements(command), module), true));
+                    }
+                }
+
+                for (int x = 0; x < pending.size(); x++) {
+                    Entry e = pending.get(x);
+                    if (!e.cancelled && e.phase(Entry.INITIALIZE)) {
+                        running.add(e);
+                    } else if (e.failed) {
+                        // lets it stop what it started
+                        e.phase(Entry.INTERRUPT);
+                    }
+                }
+                pending.clear();
+
+                for (int x = 0; x < running.size(); x++) {
+                    Entry e = running.get(x);
+                    if (!e.cancelled && e.phase(Entry.EXECUTE) && e.phase(Entry.IS_FINISHED)) {
+                        e.finished = true;
+                    }
+                }
+            } finally {
+                stepping = false;
+                removeDone();
+            }
+        }
+    }
+
+    // ends commands that are done, which can schedule or cancel other commands
+    private void removeDone() {
+        if (ending) {
+            // the call that is already ending commands picks these up
+            return;
+        }
+        ending = true;
+        try {
+            boolean removed = true;
+            while (removed) {
+                removed = false;
+                // only this loop removes from running while ending
+                for (int x = running.size() - 1; x >= 0; x--) {
+                    Entry e = running.get(x);
+                    if (e.failed || e.cancelled || e.finished) {
+                        running.remove(x);
+                        removed = true;
+                        // failed commands are still ended, so they can stop their outputs
+                        e.phase(e.finished && !e.failed ? Entry.END : Entry.INTERRUPT);
+                    }
+                }
+            }
+        } finally {
+            ending = false;
+        }
+    }
+
+    private boolean add(Entry entry) {
+        // checks every module first so that nothing is cancelled if rejected
+        for (Module module : entry.requirements) {
+            Entry owner = owner(module);
+            if (owner != null && !owner.interruptible) {
+                Logger.getLogger(this).debug("Command " + entry.command + " rejected, "
+                        + module + " is used by " + owner.command);
+                return false;
+            }
+        }
+        for (Module module : entry.requirements) {
+            Entry owner = owner(module);
+            if (owner != null) {
+                owner.cancelled = true;
+            }
+        }
+        pending.add(entry);
+        if (!stepping) {
+            removeDone();
+        }
+        return true;
+    }
+
+    // the active command that requires the module
+    private Entry owner(Module module) {
+        Entry owner = owner(running, module);
+        return owner != null ? owner : owner(pending, module);
+    }
+
+    private static Entry owner(ArrayList<Entry> entries, Module module) {
+        for (int x = 0; x < entries.size(); x++) {
+            Entry e = entries.get(x);
+            if (e.isActive()) {
+                for (Module m : e.requirements) {
+                    if (m == module) {
+                        return e;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Entry find(ArrayList<Entry> entries, Command command) {
+        for (int x = 0; x < entries.size(); x++) {
+            Entry e = entries.get(x);
+            if (e.command == command && e.isActive()) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    private static Module[] withModule(Module[] modules, Module module) {
+        for (Module m : modules) {
+            if (m == module) {
+                return modules;
+            }
+        }
+        Module[] all = new Module[modules.length + 1];
+        System.arraycopy(modules, 0, all, 0, modules.length);
+        all[modules.length] = module;
+        return all;
+    }
+
+    // a scheduled command and its progress
+    private static final class Entry {
+
+        private static final int INITIALIZE = 0, EXECUTE = 1, IS_FINISHED = 2, END = 3, INTERRUPT = 4;
+        private final Command command;
+        private final CooperativeCommand cooperative;
+        private final Module[] requirements;
+        private final boolean interruptible;
+        private boolean cancelled, finished, failed;
+
+        Entry(Command command, CooperativeCommand cooperative, Module[] requirements, boolean interruptible) {
+            this.command = command;
+            this.cooperative = cooperative;
+            this.requirements = requirements;
+            this.interruptible = interruptible;
+        }
+
+        boolean isActive() {
+            return !cancelled && !finished && !failed;
+        }
+
+        // returns false if the phase failed, or IS_FINISHED returned false
+        boolean phase(int phase) {
+            try {
+                switch (phase) {
+                    case INITIALIZE:
+                        cooperative.initialize();
+                        return true;
+                    case EXECUTE:
+                        if (CommandTracer.isEnabled()) {
+                            long start = System.nanoTime();
+                            cooperative.execute();
+                            CommandTracer.record(command, start, System.nanoTime());
+                        } else {
+                            cooperative.execute();
+                        }
+                        return true;
+                    case IS_FINISHED:
+                        return cooperative.isFinished();
+                    case END:
+                        cooperative.end(false);
+                        return true;
+                    default:
+                        cooperative.end(true);
+                        return true;
+                }
+            } catch (RuntimeException ex) {
+                Logger.getLogger(CommandScheduler.class).error("Command " + command + " failed", ex);
+                failed = true;
+                return false;
+            }
+        }
+    }
+}
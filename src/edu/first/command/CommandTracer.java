@@ -0,0 +1,216 @@
+package edu.first.command;
+
+import edu.first.util.TextFiles;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Records when commands start and finish, to find out which parts of a routine
+ * are slow. Tracing is off by default. When it is {@link #start(int) started},
+ * every command that is run through {@link Commands#run(Command)}, a
+ * {@link CommandExecutor}, a {@link edu.first.commands.CommandGroup} or a
+ * {@link edu.first.commands.ConcurrentCommandGroup} is recorded, along with the
+ * thread that ran it. Every step of the {@link CommandScheduler} is recorded as
+ * well.
+ *
+ * <p>
+ * Records are kept in a ring buffer that is allocated when tracing starts, so
+ * recording never allocates. When the buffer is full, the oldest records are
+ * overwritten.
+ *
+ * <p>
+ * After the match, the records can be {@link #dump(File) written} in the
+ * Chrome trace format, and opened in {@code chrome://tracing} (or any viewer
+ * that reads that format) to see every command on a timeline per thread.
+ *
+ * @since October 18 26
+ * @author Joel Gallant
+ */
+public final class CommandTracer {
+
+    private static volatile Ring ring;
+
+    // cannot be subclassed or instantiated
+    private CommandTracer() throws IllegalAccessException {
+        throw new IllegalAccessException();
+    }
+
+    /**
+     * Starts recording commands. Records from before are thrown away.
+     *
+     * @throws IllegalArgumentException when capacity is less than 1
+     * @param capacity how many records are kept (rounded up to a power of two)
+     */
+    public static void start(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException(capacity + " is not a valid capacity");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        ring = new Ring(size);
+    }
+
+    /**
+     * Stops recording commands. Records are kept until tracing is started
+     * again, so they can still be dumped.
+     */
+    public static void stop() {
+        Ring r = ring;
+        if (r != null) {
+            r.enabled = false;
+        }
+    }
+
+    /**
+     * Returns whether commands are being recorded.
+     *
+     * @return if tracing is on
+     */
+    public static boolean isEnabled() {
+        Ring r = ring;
+        return r != null && r.enabled;
+    }
+
+    /**
+     * Records that a command ran on the current thread. Does nothing if
+     * tracing is off.
+     *
+     * @param command command that ran
+     * @param start {@link System#nanoTime()} when the command started
+     * @param end {@link System#nanoTime()} when the command finished
+     */
+    public static void record(Object command, long start, long end) {
+        Ring r = ring;
+        if (r != null && r.enabled) {
+            r.record(command, Thread.currentThread(), start, end);
+        }
+    }
+
+    /**
+     * Writes every record to a file in the Chrome trace (JSON) format. Times
+     * are in microseconds since the first record.
+     *
+     * @throws IOException when writing causes an error
+     * @param file file to write to
+     */
+    public static void dump(File file) throws IOException {
+        TextFiles.writeAsFile(file, toJson());
+    }
+
+    /**
+     * Returns every record in the Chrome trace (JSON) format.
+     *
+     * @return trace of recorded commands
+     */
+    public static String toJson() {
+        Ring r = ring;
+        StringBuilder json = new StringBuilder("{\"traceEvents\":[");
+        if (r == null) {
+            return json.append("]}").toString();
+        }
+        List<Thread> threads = new ArrayList<>();
+        long origin = Long.MAX_VALUE;
+        long last = r.next.get();
+        long first = Math.max(0, last - r.size);
+        for (long i = first; i < last; i++) {
+            int slot = (int) (i & r.mask);
+            if (r.sequence.get(slot) == 2 * i + 2) {
+                origin = Math.min(origin, r.start.get(slot));
+            }
+        }
+        boolean comma = false;
+        for (long i = first; i < last; i++) {
+            int slot = (int) (i & r.mask);
+            long sequence = r.sequence.get(slot);
+            Object command = r.command.get(slot);
+            Thread thread = r.thread.get(slot);
+            long start = r.start.get(slot);
+            long end = r.end.get(slot);
+            if (sequence != 2 * i + 2 || r.sequence.get(slot) != sequence) {
+                // being overwritten
+                continue;
+            }
+            if (!threads.contains(thread)) {
+                threads.add(thread);
+            }
+            if (comma) {
+                json.append(',');
+            }
+            comma = true;
+            json.append("{\"name\":");
+            string(json, String.valueOf(command));
+            json.append(",\"ph\":\"X\",\"pid\":1,\"tid\":").append(thread.getId());
+            json.append(",\"ts\":").append((start - origin) / 1000.0);
+            json.append(",\"dur\":").append((end - start) / 1000.0).append('}');
+        }
+        for (Thread thread : threads) {
+            if (comma) {
+                json.append(',');
+            }
+            comma = true;
+            json.append("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":").append(thread.getId());
+            json.append(",\"args\":{\"name\":");
+            string(json, thread.getName());
+            json.append("}}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private static void string(StringBuilder json, String s) {
+        json.append('"');
+        for (int x = 0; x < s.length(); x++) {
+            char c = s.charAt(x);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    // each slot has a sequence number that is odd while it is being written,
+    // every field is atomic so that reads and writes are never reordered around it
+    private static final class Ring {
+
+        private final int size;
+        private final int mask;
+        private final AtomicReferenceArray<Object> command;
+        private final AtomicReferenceArray<Thread> thread;
+        private final AtomicLongArray start;
+        private final AtomicLongArray end;
+        private final AtomicLongArray sequence;
+        private final AtomicLong next = new AtomicLong();
+        private volatile boolean enabled = true;
+
+        Ring(int size) {
+            this.size = size;
+            this.mask = size - 1;
+            this.command = new AtomicReferenceArray<>(size);
+            this.thread = new AtomicReferenceArray<>(size);
+            this.start = new AtomicLongArray(size);
+            this.end = new AtomicLongArray(size);
+            this.sequence = new AtomicLongArray(size);
+        }
+
+        void record(Object command, Thread thread, long start, long end) {
+            long i = next.getAndIncrement();
+            int slot = (int) (i & mask);
+            sequence.set(slot, 2 * i + 1);
+            this.command.set(slot, command);
+            this.thread.set(slot, thread);
+            this.start.set(slot, start);
+            this.end.set(slot, end);
+            sequence.set(slot, 2 * i + 2);
+        }
+    }
+}
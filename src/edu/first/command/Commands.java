@@ -1,6 +1,9 @@
 package edu.first.command;
 
+import edu.first.module.Module;
 import edu.first.util.log.Logger;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Static utility class used to add functionality to commands.
@@ -10,28 +13,43 @@ import edu.first.util.log.Logger;
  */
 public final class Commands {
 
+    private static final Module[] NO_MODULES = new Module[0];
+
     /**
-     * Runs the command.
+     * Runs the command. When {@link CommandTracer tracing} is on, the command
+     * is recorded.
      *
      * @param command command to run
      */
     public static void run(Command command) {
-        command.run();
+        if (!CommandTracer.isEnabled()) {
+            command.run();
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            command.run();
+        } finally {
+            CommandTracer.record(command, start, System.nanoTime());
+        }
     }
 
     /**
-     * Runs the command in a different (new) thread. Does not wait for command
-     * to finish.
+     * Runs the command in a different thread from the
+     * {@link CommandExecutor#getInstance() command pool}. Does not wait for
+     * command to finish.
      *
      * @param command command to run
+     * @return the running command, to wait for or cancel
      */
-    public static void runInNewThread(Command command) {
-        new Thread(command).start();
+    public static CommandHandle runInNewThread(Command command) {
+        return CommandExecutor.getInstance().submit(command);
     }
 
     /**
-     * Runs the command in a different (new) thread. Waits until the thread is
-     * completed running.
+     * Runs the command in a different thread from the
+     * {@link CommandExecutor#getInstance() command pool}. Waits until the
+     * command is completed running.
      *
      * <p>
      * If the thread is interrupted while running, this method will finish and
@@ -41,10 +59,8 @@ public final class Commands {
      * @return exception if one occurred while waiting (otherwise null)
      */
     public static Exception runInNewThreadAndWait(Command command) {
-        Thread t = new Thread(command);
-        t.start();
         try {
-            t.join();
+            CommandExecutor.getInstance().runAndWait(command);
         } catch (InterruptedException ex) {
             Logger.getLogger(Commands.class).error("Waiting for new thread interrupted", ex);
             return ex;
@@ -52,6 +68,225 @@ public final class Commands {
         return null;
     }
 
+    /**
+     * Runs the command in a different thread from the
+     * {@link CommandExecutor#getInstance() command pool} after a delay. No
+     * thread is used while waiting, the delay is kept by the
+     * {@link TimerWheel#getInstance() timer wheel}.
+     *
+     * @throws NullPointerException when command is null
+     * @param command command to run
+     * @param seconds time to wait before running the command
+     * @return timer that can be cancelled before the command starts
+     */
+    public static TimerWheel.Timeout runLater(final Command command, double seconds) {
+        if (command == null) {
+            throw new NullPointerException("Null command given");
+        }
+        return TimerWheel.getInstance().schedule(new Runnable() {
+            @Override
+            public void run() {
+                CommandExecutor.getInstance().submit(command);
+            }
+        }, seconds);
+    }
+
+    /**
+     * Runs the command in a different thread from the
+     * {@link CommandExecutor#getInstance() command pool} every {@code period}
+     * seconds. If the command is still running from last time, that run is
+     * skipped. No thread is used between runs.
+     *
+     * @throws NullPointerException when command is null
+     * @throws IllegalArgumentException when period is less than a millisecond
+     * @param command command to run
+     * @param period time between every run
+     * @return timer that can be cancelled to stop running the command
+     */
+    public static TimerWheel.Timeout runPeriodically(final Command command, double period) {
+        if (command == null) {
+            throw new NullPointerException("Null command given");
+        }
+        return TimerWheel.getInstance().schedulePeriodically(new Runnable() {
+            private CommandHandle last;
+
+            @Override
+            public void run() {
+                if (last == null || last.isDone()) {
+                    last = CommandExecutor.getInstance().submit(command);
+                }
+            }
+        }, period, period);
+    }
+
+    /**
+     * Returns a command that runs all of the commands at the same time, and
+     * finishes as soon as any one of them finishes. The others are cancelled.
+     *
+     * @throws NullPointerException when a command is null
+     * @param commands commands to race
+     * @return command running the race
+     */
+    public static CooperativeCommand race(Command... commands) {
+        return new RaceCommand(commands, -1, 0);
+    }
+
+    /**
+     * Returns a command that runs all of the commands at the same time, and
+     * finishes when {@code deadline} finishes. The others are cancelled if they
+     * are still running. When run normally, {@code deadline} is run on the
+     * calling thread.
+     *
+     * @throws NullPointerException when a command is null
+     * @param deadline command that decides when to stop
+     * @param others commands that are stopped with deadline
+     * @return command running them all
+     */
+    public static CooperativeCommand deadline(Command deadline, Command... others) {
+        Command[] commands = new Command[others.length + 1];
+        commands[0] = deadline;
+        System.arraycopy(others, 0, commands, 1, others.length);
+        return new RaceCommand(commands, 0, 0);
+    }
+
+    /**
+     * Returns a command that runs the command, but cancels it if it takes
+     * longer than the given time.
+     *
+     * @throws NullPointerException when command is null
+     * @throws IllegalArgumentException when seconds is not positive
+     * @param command command to run
+     * @param seconds longest time the command can run for
+     * @return command with a time limit
+     */
+    public static CooperativeCommand withTimeout(Command command, double seconds) {
+        if (!(seconds > 0)) {
+            throw new IllegalArgumentException(seconds + " is not a valid timeout");
+        }
+        return new RaceCommand(new Command[]{command}, -1, (long) (seconds * 1e9));
+    }
+
+    /**
+     * Returns the command as a {@link CooperativeCommand}. If it already is
+     * one, it is returned as is. Otherwise, the command is adapted so that it
+     * is {@link CommandExecutor#submit(Command) given} to the shared
+     * {@link CommandExecutor} when it is initialized, and is finished once the
+     * executor is done running it. Ending it early cancels it. This is how the
+     * {@link CommandScheduler} runs commands that are not cooperative, so that
+     * they never block the scheduler's thread.
+     *
+     * @throws NullPointerException when command is null
+     * @param command command to adapt
+     * @return command that can be stepped cooperatively
+     */
+    public static CooperativeCommand asCooperative(Command command) {
+        if (command == null) {
+            throw new NullPointerException("Null command given");
+        }
+        if (command instanceof CooperativeCommand) {
+            return (CooperativeCommand) command;
+        }
+        return new BlockingCommand(command);
+    }
+
+    /**
+     * Returns the modules that the command requires. Commands that are not a
+     * {@link RequiringCommand} do not require any.
+     *
+     * @param command command to check
+     * @return modules that are required
+     */
+    public static Module[] getRequirements(Command command) {
+        if (command instanceof RequiringCommand) {
+            Module[] modules = ((RequiringCommand) command).getRequirements();
+            if (modules != null) {
+                return modules;
+            }
+        }
+        return NO_MODULES;
+    }
+
+    /**
+     * Returns the objects that are {@link Module modules}, with no duplicates.
+     * Used by commands that set outputs, which require the outputs that are
+     * modules.
+     *
+     * @param objects objects that a command uses
+     * @return objects that are modules
+     */
+    public static Module[] modulesOf(Object... objects) {
+        List<Module> modules = new ArrayList<>();
+        for (Object object : objects) {
+            if (object instanceof Module && !modules.contains(object)) {
+                modules.add((Module) object);
+            }
+        }
+        return modules.toArray(NO_MODULES);
+    }
+
+    /**
+     * Returns every module that any of the commands require, with no
+     * duplicates. Used by commands that run other commands, like groups.
+     *
+     * @param commands commands to check
+     * @return modules that are required
+     */
+    public static Module[] getRequirements(Iterable<? extends Command> commands) {
+        List<Module> modules = new ArrayList<>();
+        for (Command command : commands) {
+            for (Module module : getRequirements(command)) {
+                if (!modules.contains(module)) {
+                    modules.add(module);
+                }
+            }
+        }
+        return modules.toArray(NO_MODULES);
+    }
+
+    // runs a normal command on the executor, finishing once it is done
+    private static final class BlockingCommand implements CooperativeCommand {
+
+        private final Command command;
+        // only used by the thread that steps this command
+        private CommandHandle handle;
+
+        BlockingCommand(Command command) {
+            this.command = command;
+        }
+
+        @Override
+        public void initialize() {
+            handle = CommandExecutor.getInstance().submit(command);
+        }
+
+        @Override
+        public void execute() {
+        }
+
+        @Override
+        public boolean isFinished() {
+            return handle == null || handle.isDone();
+        }
+
+        @Override
+        public void end(boolean interrupted) {
+            if (interrupted && handle != null) {
+                handle.cancel();
+            }
+            handle = null;
+        }
+
+        @Override
+        public void run() {
+            command.run();
+        }
+
+        @Override
+        public String toString() {
+            return command.toString();
+        }
+    }
+
     // cannot be subclassed or instantiated
     private Commands() throws IllegalAccessException {
         throw new IllegalAccessException();
@@ -0,0 +1,56 @@
+package edu.first.command;
+
+/**
+ * Command that can be run a little bit at a time, instead of blocking until it
+ * is done. Cooperative commands are stepped by the {@link CommandScheduler} on
+ * the thread that calls {@link CommandScheduler#run()}, so many of them can run
+ * at the same time without creating any threads.
+ *
+ * <p>
+ * When scheduled, a command goes through these phases:
+ * <ol>
+ * <li> {@link #initialize()} once, when it is started
+ * <li> {@link #execute()} once per tick, followed by {@link #isFinished()}
+ * <li> {@link #end(boolean)} once, when it is finished or cancelled
+ * </ol>
+ *
+ * None of these methods should block or take extraneous amounts of time, since
+ * every other scheduled command waits for them. Cooperative commands can still
+ * be {@link #run() run} normally, which blocks until they are done.
+ *
+ * <p>
+ * A command keeps its progress in its own fields, so a single instance should
+ * only be running in one place at a time.
+ *
+ * @since October 18 26
+ * @author Joel Gallant
+ */
+public interface CooperativeCommand extends Command {
+
+    /**
+     * Starts the command. Called once before the first {@link #execute()}.
+     */
+    public void initialize();
+
+    /**
+     * Does a single step of what the command is intended to do. Called once
+     * per tick of the scheduler.
+     */
+    public void execute();
+
+    /**
+     * Returns whether the command is done. Called after every
+     * {@link #execute()}.
+     *
+     * @return if command has finished
+     */
+    public boolean isFinished();
+
+    /**
+     * Finishes the command. Called once, either after {@link #isFinished()}
+     * returns true or when the command is cancelled.
+     *
+     * @param interrupted if the command was cancelled before it finished
+     */
+    public void end(boolean interrupted);
+}
@@ -0,0 +1,156 @@
+package edu.first.command;
+
+import edu.first.module.Module;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs commands at the same time, and stops all of them when one finishes (or
+ * when a time limit runs out). See {@link Commands#race(Command...)},
+ * {@link Commands#deadline(Command, Command...)} and
+ * {@link Commands#withTimeout(Command, double)}.
+ *
+ * @since October 18 26
+ * @author Joel Gallant
+ */
+final class RaceCommand implements CooperativeCommand, RequiringCommand {
+
+    private final Command[] commands;
+    // index of the only command that ends the race, or -1 for any of them
+    private final int deadline;
+    private final long timeout;
+    private CooperativeCommand[] cooperative;
+    private boolean[] done;
+    private boolean finished;
+    private long end;
+
+    /**
+     * Constructs the race.
+     *
+     * @param commands commands to run at the same time
+     * @param deadline index of the command that ends the race, or -1 for any
+     * @param timeout nanoseconds until the race is stopped, or 0 for none
+     */
+    RaceCommand(Command[] commands, int deadline, long timeout) {
+        for (Command command : commands) {
+            if (command == null) {
+                throw new NullPointerException("Null command given");
+            }
+        }
+        this.commands = commands.clone();
+        this.deadline = deadline;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Runs every command, and waits for the race to end. Commands that are
+     * still running when it ends are cancelled. If this thread is interrupted,
+     * every command is cancelled. A race without commands ends right away.
+     */
+    @Override
+    public void run() {
+        if (commands.length == 0) {
+            return;
+        }
+        CommandExecutor executor = CommandExecutor.getInstance();
+        final CountDownLatch first = new CountDownLatch(1);
+        CommandHandle[] handles = new CommandHandle[commands.length];
+        try {
+            for (int x = 0; x < commands.length; x++) {
+                if (x != deadline) {
+                    final Command command = commands[x];
+                    handles[x] = executor.submit(new Command() {
+                        @Override
+                        public void run() {
+                            try {
+                                command.run();
+                            } finally {
+                                first.countDown();
+                            }
+                        }
+
+                        @Override
+                        public String toString() {
+                            return command.toString();
+                        }
+                    });
+                }
+            }
+            if (deadline >= 0) {
+                Commands.run(commands[deadline]);
+            } else if (timeout > 0) {
+                first.await(timeout, TimeUnit.NANOSECONDS);
+            } else {
+                first.await();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (CommandHandle handle : handles) {
+                if (handle != null) {
+                    handle.cancel();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void initialize() {
+        if (cooperative == null) {
+            cooperative = new CooperativeCommand[commands.length];
+            done = new boolean[commands.length];
+            for (int x = 0; x < commands.length; x++) {
+                cooperative[x] = Commands.asCooperative(commands[x]);
+            }
+        }
+        finished = commands.length == 0;
+        end = System.nanoTime() + timeout;
+        for (int x = 0; x < cooperative.length; x++) {
+            done[x] = false;
+            cooperative[x].initialize();
+        }
+    }
+
+    @Override
+    public void execute() {
+        for (int x = 0; x < cooperative.length && !finished; x++) {
+            if (!done[x]) {
+                cooperative[x].execute();
+                if (cooperative[x].isFinished()) {
+                    cooperative[x].end(false);
+                    done[x] = true;
+                    finished = deadline < 0 || deadline == x;
+                }
+            }
+        }
+        if (timeout > 0 && System.nanoTime() - end >= 0) {
+            finished = true;
+        }
+    }
+
+    @Override
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public void end(boolean interrupted) {
+        for (int x = 0; x < cooperative.length; x++) {
+            if (!done[x]) {
+                done[x] = true;
+                cooperative[x].end(true);
+            }
+        }
+    }
+
+    @Override
+    public Module[] getRequirements() {
+        return Commands.getRequirements(Arrays.asList(commands));
+    }
+
+    @Override
+    public boolean isInterruptible() {
+        return true;
+    }
+}
@@ -0,0 +1,37 @@
+package edu.first.command;
+
+import edu.first.module.Module;
+
+/**
+ * Command that uses {@link Module modules} that no other command should use at
+ * the same time, like a drivetrain or a speed controller. The
+ * {@link CommandScheduler} only lets one command use a module at once, so each
+ * actuator is only given one value per tick.
+ *
+ * <p>
+ * When a command is scheduled while another one is using one of its modules,
+ * the one that is running is cancelled if it is
+ * {@link #isInterruptible() interruptible}. Otherwise, the new command is not
+ * scheduled.
+ *
+ * @since October 18 26
+ * @author Joel Gallant
+ */
+public interface RequiringCommand extends Command {
+
+    /**
+     * Returns the modules that this command uses. Should always return the
+     * same modules.
+     *
+     * @return modules that are required
+     */
+    public Module[] getRequirements();
+
+    /**
+     * Returns whether this command can be cancelled to let another command use
+     * its modules.
+     *
+     * @return if command can be interrupted
+     */
+    public boolean isInterruptible();
+}
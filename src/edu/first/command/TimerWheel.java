@@ -0,0 +1,384 @@
+package edu.first.command;
+
+import edu.first.util.log.Logger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs tasks after a delay, or periodically, using a single thread. Timers are
+ * kept in a hierarchical timer wheel with a resolution of one millisecond, so
+ * starting, cancelling and expiring a timer takes the same (constant) time no
+ * matter how many timers there are.
+ *
+ * <p>
+ * The wheel has four levels of 64 slots. The first level holds timers that
+ * expire within the next 64 milliseconds, one slot per millisecond. Each level
+ * after that has slots that are 64 times longer, and its timers are moved down
+ * a level when their slot comes up. Timers further away than all four levels
+ * (about four and a half hours) wait in an overflow list.
+ *
+ * <p>
+ * Ticks are aligned to whole milliseconds from when the wheel was created. The
+ * thread does not wake up on every tick. Each level keeps a bit for every slot
+ * that has timers, so the thread finds the next tick that has timers to expire
+ * (or to move down a level) and sleeps until then. Tasks are run on the
+ * wheel's thread, so they should be short. Commands are given to the
+ * {@link CommandExecutor} or the {@link CommandScheduler} instead of run
+ * directly (see {@link Commands#runLater(Command, double)}).
+ *
+ * @since October 18 26
+ * @author Joel Gallant
+ */
+public final class TimerWheel {
+
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final long TICK_NANOS = 1000000;
+    private static final Object defaultLock = new Object();
+    private static TimerWheel defaultWheel;
+    // uses lock so user can't lock wheel accidentally using "this"
+    private final Object lock = new Object();
+    private final Timeout[][] slots = new Timeout[LEVELS][SLOTS];
+    // bit for every slot of each level that has timers
+    private final long[] occupied = new long[LEVELS];
+    private Timeout overflow;
+    private final long epoch = System.nanoTime();
+    private final String name;
+    private final int priority;
+    private Thread thread;
+    // last tick that was expired, only changes while there are timers
+    private long now;
+    private int count;
+    // tick that the thread is sleeping until
+    private long wakeTick = Long.MAX_VALUE;
+
+    /**
+     * Returns the wheel that the command library uses. Its thread is at
+     * {@code Thread.NORM_PRIORITY + 1}, above commands but below the control
+     * loops.
+     *
+     * @return the shared timer wheel
+     */
+    public static TimerWheel getInstance() {
+        synchronized (defaultLock) {
+            if (defaultWheel == null) {
+                defaultWheel = new TimerWheel("Command Timer", Thread.NORM_PRIORITY + 1);
+            }
+            return defaultWheel;
+        }
+    }
+
+    /**
+     * Constructs a timer wheel with its own thread. The thread is started when
+     * the first timer is given.
+     *
+     * @param name name of the thread
+     * @param priority priority of the thread
+     */
+    public TimerWheel(String name, int priority) {
+        this.name = name;
+        this.priority = priority;
+    }
+
+    /**
+     * Runs the task once, after the given delay.
+     *
+     * @throws NullPointerException when task is null
+     * @param task task to run on the wheel's thread
+     * @param delay seconds to wait before running the task
+     * @return timer that can be cancelled
+     */
+    public Timeout schedule(Runnable task, double delay) {
+        return start(task, delay, 0);
+    }
+
+    /**
+     * Runs the task every {@code period}, starting after the given delay.
+     * Runs that are missed because the task took too long are skipped, so
+     * every run happens on a multiple of the period.
+     *
+     * @throws NullPointerException when task is null
+     * @throws IllegalArgumentException when period is less than a millisecond
+     * @param task task to run on the wheel's thread
+     * @param delay seconds to wait before running the task the first time
+     * @param period seconds between every run
+     * @return timer that can be cancelled
+     */
+    public Timeout schedulePeriodically(Runnable task, double delay, double period) {
+        long periodTicks = Math.round(period * 1000);
+        if (periodTicks < 1) {
+            throw new IllegalArgumentException(period + " is shorter than a millisecond");
+        }
+        return start(task, delay, periodTicks);
+    }
+
+    private Timeout start(Runnable task, double delay, long period) {
+        if (task == null) {
+            throw new NullPointerException("Null task given");
+        }
+        long delayTicks = Math.max(1, Math.round(delay * 1000));
+        Timeout timeout = new Timeout(this, task, period);
+        synchronized (lock) {
+            long tick = currentTick();
+            if (count == 0) {
+                // nothing has been ticking, so catch up to the current time
+                now = tick;
+            }
+            // from the real time, since the wheel can be behind it
+            timeout.deadline = tick + delayTicks;
+            insert(timeout);
+            if (timeout.deadline < wakeTick && thread != null) {
+                // sooner than what the thread is sleeping for
+                LockSupport.unpark(thread);
+            }
+            if (thread == null) {
+                thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        loop();
+                    }
+                }, name);
+                thread.setPriority(priority);
+                thread.setDaemon(true);
+                thread.start();
+            }
+            lock.notifyAll();
+        }
+        return timeout;
+    }
+
+    private long currentTick() {
+        return (System.nanoTime() - epoch) / TICK_NANOS;
+    }
+
+    // lock must be held, timers that are due now go in the slot about to expire
+    private void insert(Timeout timeout) {
+        long deadline = Math.max(timeout.deadline, now);
+        int level = -1;
+        for (int x = 0; x < LEVELS; x++) {
+            int shift = SLOT_BITS * (x + 1);
+            if ((deadline >> shift) == (now >> shift)) {
+                level = x;
+                break;
+            }
+        }
+        Timeout head;
+        if (level < 0) {
+            timeout.level = -1;
+            head = overflow;
+            overflow = timeout;
+        } else {
+            int slot = (int) (deadline >> (SLOT_BITS * level)) & SLOT_MASK;
+            timeout.level = level;
+            timeout.slot = slot;
+            head = slots[level][slot];
+            slots[level][slot] = timeout;
+            occupied[level] |= 1L << slot;
+        }
+        timeout.prev = null;
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        timeout.linked = true;
+        count++;
+    }
+
+    // lock must be held
+    private void unlink(Timeout timeout) {
+        if (!timeout.linked) {
+            return;
+        }
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else if (timeout.level < 0) {
+            overflow = timeout.next;
+        } else {
+            slots[timeout.level][timeout.slot] = timeout.next;
+            if (timeout.next == null) {
+                occupied[timeout.level] &= ~(1L << timeout.slot);
+            }
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.linked = false;
+        count--;
+    }
+
+    // lock must be held, moves every timer in the list back into the wheel
+    private void reinsert(Timeout list) {
+        while (list != null) {
+            Timeout next = list.next;
+            list.linked = false;
+            count--;
+            insert(list);
+            list = next;
+        }
+    }
+
+    // lock must be held, first tick after now that has timers to expire or move
+    private long nextTick() {
+        long next = Long.MAX_VALUE;
+        for (int x = 0; x < LEVELS; x++) {
+            int shift = SLOT_BITS * x;
+            int current = (int) (now >> shift) & SLOT_MASK;
+            long later = occupied[x] & (-2L << current);
+            if (later != 0) {
+                long block = (now >> (shift + SLOT_BITS)) << (shift + SLOT_BITS);
+                next = Math.min(next, block + ((long) Long.numberOfTrailingZeros(later) << shift));
+            }
+        }
+        if (overflow != null) {
+            int shift = SLOT_BITS * LEVELS;
+            next = Math.min(next, ((now >> shift) + 1) << shift);
+        }
+        return next;
+    }
+
+    // lock must be held, removes every timer in the slot
+    private Timeout take(int level, int slot) {
+        Timeout list = slots[level][slot];
+        slots[level][slot] = null;
+        occupied[level] &= ~(1L << slot);
+        return list;
+    }
+
+    private void loop() {
+        while (true) {
+            Timeout expired;
+            long deadline;
+            synchronized (lock) {
+                while (count == 0) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException ex) {
+                        Logger.getLogger(this).error("Timer wheel interrupted", ex);
+                    }
+                }
+                wakeTick = nextTick();
+                deadline = epoch + wakeTick * TICK_NANOS;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining > 0) {
+                // woken up early when a sooner timer is given
+                LockSupport.parkNanos(this, remaining);
+                continue;
+            }
+            synchronized (lock) {
+                wakeTick = Long.MAX_VALUE;
+                long next = nextTick();
+                if (next == Long.MAX_VALUE || epoch + next * TICK_NANOS - System.nanoTime() > 0) {
+                    // cancelled or changed while sleeping
+                    continue;
+                }
+                // ticks before the next one have nothing to do
+                now = next;
+                for (int x = LEVELS - 1; x > 0; x--) {
+                    long mask = (1L << (SLOT_BITS * x)) - 1;
+                    if ((now & mask) == 0) {
+                        if (x == LEVELS - 1 && (now & ((1L << (SLOT_BITS * LEVELS)) - 1)) == 0) {
+                            Timeout list = overflow;
+                            overflow = null;
+                            reinsert(list);
+                        }
+                        reinsert(take(x, (int) (now >> (SLOT_BITS * x)) & SLOT_MASK));
+                    }
+                }
+                expired = take(0, (int) now & SLOT_MASK);
+                for (Timeout t = expired; t != null; t = t.next) {
+                    t.linked = false;
+                    count--;
+                }
+            }
+            while (expired != null) {
+                Timeout next = expired.next;
+                expired.next = null;
+                expired.prev = null;
+                expired.fire();
+                expired = next;
+            }
+        }
+    }
+
+    /**
+     * A task that was given to a {@link TimerWheel}, which can be cancelled
+     * before it runs.
+     */
+    public static final class Timeout {
+
+        private final TimerWheel wheel;
+        private final Runnable task;
+        private final long period;
+        // wheel state, guarded by the wheel's lock
+        private long deadline;
+        private int level, slot;
+        private Timeout prev, next;
+        private boolean linked;
+        private volatile boolean cancelled;
+        private volatile boolean expired;
+
+        private Timeout(TimerWheel wheel, Runnable task, long period) {
+            this.wheel = wheel;
+            this.task = task;
+            this.period = period;
+        }
+
+        /**
+         * Stops the task from running again. If it is running right now, it
+         * finishes.
+         */
+        public void cancel() {
+            cancelled = true;
+            synchronized (wheel.lock) {
+                wheel.unlink(this);
+            }
+        }
+
+        /**
+         * Returns whether {@link #cancel()} has been called.
+         *
+         * @return if timer was cancelled
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Returns whether the task has been run, and will not be run again
+         * (either it is not periodic, or it has been cancelled).
+         *
+         * @return if timer is done
+         */
+        public boolean isDone() {
+            return cancelled || expired;
+        }
+
+        private void fire() {
+            if (cancelled) {
+                return;
+            }
+            if (period > 0) {
+                synchronized (wheel.lock) {
+                    // skips missed runs to stay on multiples of the period
+                    do {
+                        deadline += period;
+                    } while (deadline <= wheel.now);
+                    if (!cancelled) {
+                        wheel.insert(this);
+                    }
+                }
+            } else {
+                expired = true;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException ex) {
+                Logger.getLogger(wheel).error("Timer task " + task + " failed", ex);
+            }
+        }
+    }
+}
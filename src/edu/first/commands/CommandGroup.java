@@ -4,6 +4,10 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import edu.first.command.Command;
+import edu.first.command.Commands;
+import edu.first.command.CooperativeCommand;
+import edu.first.command.RequiringCommand;
+import edu.first.module.Module;
 
 /**
  * Command that encompasses multiple commands strung together. Runs commands
@@ -50,12 +54,20 @@ import edu.first.command.Command;
  * F6
  * </pre>
  *
+ * <p>
+ * When scheduled cooperatively, each command is stepped until it finishes and
+ * the next one is started in the same tick, so a string of quick commands does
+ * not take a tick each.
+ *
  * @since May 26 13
  * @author Joel Gallant
  */
-public class CommandGroup implements Command {
+public class CommandGroup implements CooperativeCommand, RequiringCommand {
 
     private final List<Command> commands = new ArrayList<>();
+    private CooperativeCommand[] cooperative;
+    private int index;
+    private boolean started;
 
     /**
      * Protected constructor to prevent instantiating from other classes.
@@ -136,13 +148,97 @@ public class CommandGroup implements Command {
      * {@link #appendSequential(edu.ATA.command.Command) appendSequential(Command)}
      * and
      * {@link #appendConcurrent(edu.ATA.command.Command) appendConcurrent(Command)}.
+     *
+     * <p>
+     * If the thread is interrupted (the group was cancelled), the rest of the
+     * commands are not run.
      */
     @Override
     public final void run() {
         Iterator<Command> i = commands.iterator();
-        while (i.hasNext()) {
+        while (i.hasNext() && !Thread.currentThread().isInterrupted()) {
             Command c = (Command) i.next();
-            c.run();
+            Commands.run(c);
         }
     }
+
+    /**
+     * Starts at the first command of the group.
+     */
+    @Override
+    public final void initialize() {
+        if (cooperative == null || cooperative.length != commands.size()) {
+            cooperative = new CooperativeCommand[commands.size()];
+            for (int x = 0; x < cooperative.length; x++) {
+                cooperative[x] = Commands.asCooperative(commands.get(x));
+            }
+        }
+        index = 0;
+        started = false;
+    }
+
+    /**
+     * Steps the current command. If it finishes, the next command is started
+     * and stepped right away.
+     */
+    @Override
+    public final void execute() {
+        while (index < cooperative.length) {
+            CooperativeCommand c = cooperative[index];
+            if (!started) {
+                c.initialize();
+                started = true;
+            }
+            c.execute();
+            if (!c.isFinished()) {
+                return;
+            }
+            c.end(false);
+            started = false;
+            index++;
+        }
+    }
+
+    /**
+     * Returns whether every command has finished.
+     *
+     * @return if group is done
+     */
+    @Override
+    public final boolean isFinished() {
+        return index >= cooperative.length;
+    }
+
+    /**
+     * Ends the current command if it was in the middle of running.
+     *
+     * @param interrupted if the group was cancelled
+     */
+    @Override
+    public final void end(boolean interrupted) {
+        if (started) {
+            started = false;
+            cooperative[index].end(true);
+        }
+    }
+
+    /**
+     * Returns every module that the commands in this group require.
+     *
+     * @return modules that are required
+     */
+    @Override
+    public Module[] getRequirements() {
+        return Commands.getRequirements(commands);
+    }
+
+    /**
+     * Returns true, groups can always be cancelled.
+     *
+     * @return true
+     */
+    @Override
+    public boolean isInterruptible() {
+        return true;
+    }
 }
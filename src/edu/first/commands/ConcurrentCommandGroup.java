@@ -2,19 +2,54 @@ package edu.first.commands;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 import edu.first.command.Command;
+import edu.first.command.CommandExecutor;
+import edu.first.command.CommandHandle;
+import edu.first.command.Commands;
+import edu.first.command.CooperativeCommand;
+import edu.first.command.RequiringCommand;
+import edu.first.module.Module;
 import edu.first.util.log.Logger;
 
 /**
  * Basic command group that runs multiple commands in parallel. Every command
  * inside of this group is started at the same time.
  *
+ * <p>
+ * By default, the group waits for every command to finish. It can instead
+ * {@link #setJoin(int) finish when some of them have finished} (cancelling the
+ * rest), like when only the first of a few ways to detect something matters.
+ * The {@link #setMaxParallelism(int) amount of commands that run at once} can
+ * also be limited, so that a large group (like calibrating every sensor) does
+ * not take every thread of the command pool. Commands past the limit are
+ * started in order as others finish.
+ *
+ * <p>
+ * When scheduled cooperatively, every command is stepped once per tick on the
+ * scheduler's thread, instead of being given a thread each.
+ *
  * @since May 26 13
  * @author Joel Gallant
  */
-public final class ConcurrentCommandGroup implements Command {
+public final class ConcurrentCommandGroup implements CooperativeCommand, RequiringCommand {
 
+    /**
+     * Join that waits for every command to finish.
+     */
+    public static final int ALL = 0;
+    /**
+     * Join that finishes when any of the commands has finished.
+     */
+    public static final int ANY = 1;
     private final List<Command> commands;
+    private int join = ALL;
+    private int maxParallelism;
+    private CooperativeCommand[] cooperative;
+    private boolean[] done;
+    private int started;
+    private int remaining;
 
     /**
      * Constructs the command group using an array of commands to be run at the
@@ -54,26 +89,262 @@ public final class ConcurrentCommandGroup implements Command {
     }
 
     /**
-     * Runs all of the commands, and waits for them all to finish.
+     * Sets how many commands have to finish for the group to finish. When they
+     * have, the commands that are still running are cancelled.
+     * {@link #ALL} (the default) waits for every command, {@link #ANY} waits
+     * for the first one. Any other amount waits for that many commands, or for
+     * every command if there are less than that in the group.
+     *
+     * <p>
+     * When running normally, a command that fails (throws an exception) does
+     * not count towards the join, unless it is waiting for every command. If
+     * so many commands fail that the join can never be reached, the group
+     * finishes early.
+     *
+     * @throws IllegalArgumentException when join is negative
+     * @param join amount of commands to wait for
+     */
+    public void setJoin(int join) {
+        if (join < 0) {
+            throw new IllegalArgumentException(join + " is not a valid join");
+        }
+        this.join = join;
+    }
+
+    /**
+     * Returns how many commands have to finish for the group to finish.
+     *
+     * @return amount of commands to wait for, or {@link #ALL}
+     * @see #setJoin(int)
+     */
+    public int getJoin() {
+        return join;
+    }
+
+    /**
+     * Sets the most commands that can run at the same time. Commands past the
+     * limit wait, in order, until another command has finished. 0 (the
+     * default) means that there is no limit.
+     *
+     * @throws IllegalArgumentException when maxParallelism is negative
+     * @param maxParallelism most commands to run at once, or 0 for no limit
+     */
+    public void setMaxParallelism(int maxParallelism) {
+        if (maxParallelism < 0) {
+            throw new IllegalArgumentException(maxParallelism + " is not a valid parallelism");
+        }
+        this.maxParallelism = maxParallelism;
+    }
+
+    /**
+     * Returns the most commands that can run at the same time.
+     *
+     * @return most commands to run at once, or 0 for no limit
+     */
+    public int getMaxParallelism() {
+        return maxParallelism;
+    }
+
+    // amount of commands that have to finish
+    private int required() {
+        return join == ALL || join > commands.size() ? commands.size() : join;
+    }
+
+    // amount of commands that run at once
+    private int parallelism() {
+        return maxParallelism == 0 || maxParallelism > commands.size() ? commands.size() : maxParallelism;
+    }
+
+    /**
+     * Runs all of the commands, and waits for them to finish (or for as many as
+     * the {@link #setJoin(int) join} needs). Commands are run by the
+     * {@link CommandExecutor#getInstance() command pool}. When waiting for every
+     * command, this thread also runs commands instead of only waiting.
      *
-     * @throws RuntimeException when threads are somehow interrupted
+     * <p>
+     * Otherwise, this thread only waits, so that every command that is still
+     * running can be cancelled once the join is reached. The commands then
+     * need free threads in the pool: when every thread is busy, they wait in
+     * its queue until one is free, so the pool should be
+     * {@link CommandExecutor#setPoolSize(int) big enough} for every group that
+     * runs at once.
+     *
+     * <p>
+     * If the thread is interrupted (the group was cancelled), every command is
+     * cancelled and this method returns with the thread still interrupted.
      */
     @Override
     public void run() {
+        if (commands.isEmpty()) {
+            return;
+        }
+        CommandExecutor executor = CommandExecutor.getInstance();
+        int required = required();
+        boolean all = required == commands.size();
+        Worker worker = new Worker(required, all);
+        // when waiting for all, this thread is one of the workers
+        CommandHandle[] tasks = new CommandHandle[all ? parallelism() - 1 : parallelism()];
+        for (int x = 0; x < tasks.length; x++) {
+            tasks[x] = executor.submit(worker);
+        }
         try {
-            Thread[] threads = new Thread[commands.size()];
-            for (int x = 0; x < commands.size(); x++) {
-                threads[x] = new Thread((Command) commands.get(x));
+            if (all) {
+                worker.run();
+                for (CommandHandle task : tasks) {
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                    task.await();
+                }
+            } else {
+                worker.finished.await();
+            }
+        } catch (InterruptedException ex) {
+            Logger.getLogger(getClass()).debug("Command Group interrupted");
+            Thread.currentThread().interrupt();
+        } finally {
+            for (CommandHandle task : tasks) {
+                task.cancel();
+            }
+        }
+    }
+
+    /**
+     * Starts every command (or as many as the
+     * {@link #setMaxParallelism(int) limit} allows).
+     */
+    @Override
+    public void initialize() {
+        if (cooperative == null || cooperative.length != commands.size()) {
+            cooperative = new CooperativeCommand[commands.size()];
+            done = new boolean[cooperative.length];
+        }
+        for (int x = 0; x < cooperative.length; x++) {
+            cooperative[x] = Commands.asCooperative(commands.get(x));
+            done[x] = false;
+        }
+        remaining = required();
+        started = 0;
+        int parallelism = parallelism();
+        while (started < parallelism) {
+            cooperative[started++].initialize();
+        }
+    }
+
+    /**
+     * Steps every command that has started and not finished. When a command
+     * finishes, the next one that was waiting is started.
+     */
+    @Override
+    public void execute() {
+        for (int x = 0; x < started && remaining > 0; x++) {
+            if (!done[x]) {
+                cooperative[x].execute();
+                if (cooperative[x].isFinished()) {
+                    cooperative[x].end(false);
+                    done[x] = true;
+                    remaining--;
+                    if (started < cooperative.length && remaining > 0) {
+                        cooperative[started++].initialize();
+                    }
+                }
             }
-            for (Thread thread : threads) {
-                thread.start();
+        }
+    }
+
+    /**
+     * Returns whether the commands that the {@link #setJoin(int) join} waits
+     * for have finished.
+     *
+     * @return if group is done
+     */
+    @Override
+    public boolean isFinished() {
+        return remaining == 0;
+    }
+
+    /**
+     * Ends every command that was in the middle of running.
+     *
+     * @param interrupted if the group was cancelled
+     */
+    @Override
+    public void end(boolean interrupted) {
+        for (int x = 0; x < started; x++) {
+            if (!done[x]) {
+                done[x] = true;
+                cooperative[x].end(true);
             }
-            for (Thread thread : threads) {
-                thread.join();
+        }
+        remaining = 0;
+    }
+
+    /**
+     * Returns every module that the commands in this group require.
+     *
+     * @return modules that are required
+     */
+    @Override
+    public Module[] getRequirements() {
+        return Commands.getRequirements(commands);
+    }
+
+    /**
+     * Returns true, groups can always be cancelled.
+     *
+     * @return true
+     */
+    @Override
+    public boolean isInterruptible() {
+        return true;
+    }
+
+    // runs the commands that have not been started yet, one at a time
+    private final class Worker implements Command {
+
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final CountDownLatch finished;
+        // most commands that can fail before the join can never be reached
+        private final int failures;
+        // whether failed commands count as finished
+        private final boolean all;
+
+        Worker(int required, boolean all) {
+            this.finished = new CountDownLatch(required);
+            this.failures = commands.size() - required;
+            this.all = all;
+        }
+
+        @Override
+        public void run() {
+            int x;
+            while (finished.getCount() > 0 && !Thread.currentThread().isInterrupted()
+                    && (x = next.getAndIncrement()) < commands.size()) {
+                boolean succeeded = false;
+                try {
+                    Commands.run(commands.get(x));
+                    succeeded = true;
+                } catch (RuntimeException ex) {
+                    Logger.getLogger(ConcurrentCommandGroup.class).error("Command " + commands.get(x) + " failed", ex);
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                if (succeeded || all) {
+                    finished.countDown();
+                } else if (failed.incrementAndGet() > failures) {
+                    // join can never be reached, so that the group does not wait forever
+                    while (finished.getCount() > 0) {
+                        finished.countDown();
+                    }
+                }
             }
-        } catch (InterruptedException ex) {
-            Logger.getLogger(getClass()).error("Command Group interrupted", ex);
-            throw new RuntimeException("Command Group interrupted - " + ex.getMessage());
+        }
+
+        @Override
+        public String toString() {
+            return ConcurrentCommandGroup.this.toString();
         }
     }
 }
@@ -23,7 +23,8 @@ public final class ThreadedCommand implements Command {
     }
 
     /**
-     * Runs the command in a new thread.
+     * Runs the command in a different thread from the
+     * {@link edu.first.command.CommandExecutor#getInstance() command pool}.
      */
     @Override
     public final void run() {
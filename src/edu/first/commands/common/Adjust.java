@@ -1,6 +1,5 @@
 package edu.first.commands.common;
 
-import edu.first.command.Command;
 import edu.first.identifiers.Function;
 import edu.first.identifiers.Input;
 import edu.first.identifiers.Output;
@@ -12,7 +11,7 @@ import edu.first.identifiers.Output;
  * @since June 18 13
  * @author Joel Gallant
  */
-public class Adjust implements Command {
+public class Adjust extends OneStepCommand {
 
     private final Input input;
     private final Output output;
@@ -26,6 +25,7 @@ public class Adjust implements Command {
      * @param adjustment change to make to input
      */
     public Adjust(Input input, Output output, Function adjustment) {
+        super(output);
         this.input = input;
         this.output = output;
         this.adjustment = adjustment;
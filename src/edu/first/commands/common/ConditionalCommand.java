@@ -1,18 +1,27 @@
 package edu.first.commands.common;
 
 import edu.first.command.Command;
+import edu.first.command.Commands;
+import edu.first.command.CooperativeCommand;
+import edu.first.command.RequiringCommand;
 import edu.first.identifiers.Position;
+import edu.first.module.Module;
+import java.util.Arrays;
 
 /**
- * Command that will run if the condition returns true.
+ * Command that will run if the condition returns true. When scheduled
+ * cooperatively, the condition is checked when it starts and the chosen command
+ * is stepped until it finishes.
  *
  * @since June 17 13
  * @author Joel Gallant
  */
-public class ConditionalCommand implements Command {
+public class ConditionalCommand implements CooperativeCommand, RequiringCommand {
 
     private final Position run;
     private final Command command, none;
+    private CooperativeCommand chosen;
+    private boolean finished;
 
     /**
      * Constructs the command using the condition ({@code run}) that will
@@ -57,4 +66,74 @@ public class ConditionalCommand implements Command {
             none.run();
         }
     }
+
+    /**
+     * Checks the condition and starts the chosen command.
+     */
+    @Override
+    public void initialize() {
+        if (run.getPosition()) {
+            chosen = Commands.asCooperative(command);
+        } else {
+            chosen = none == null ? null : Commands.asCooperative(none);
+        }
+        finished = chosen == null;
+        if (chosen != null) {
+            chosen.initialize();
+        }
+    }
+
+    /**
+     * Steps the chosen command.
+     */
+    @Override
+    public void execute() {
+        if (!finished) {
+            chosen.execute();
+            finished = chosen.isFinished();
+        }
+    }
+
+    /**
+     * Returns whether the chosen command has finished.
+     *
+     * @return if command is done
+     */
+    @Override
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Ends the chosen command.
+     *
+     * @param interrupted if the command was cancelled
+     */
+    @Override
+    public void end(boolean interrupted) {
+        if (chosen != null) {
+            chosen.end(interrupted);
+            chosen = null;
+        }
+    }
+
+    /**
+     * Returns every module that either command requires.
+     *
+     * @return modules that are required
+     */
+    @Override
+    public Module[] getRequirements() {
+        return Commands.getRequirements(none == null ? Arrays.asList(command) : Arrays.asList(command, none));
+    }
+
+    /**
+     * Returns true, conditional commands can always be cancelled.
+     *
+     * @return true
+     */
+    @Override
+    public boolean isInterruptible() {
+        return true;
+    }
 }
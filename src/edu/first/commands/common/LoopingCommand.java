@@ -1,25 +1,72 @@
 package edu.first.commands.common;
 
-import edu.first.command.Command;
+import edu.first.command.CooperativeCommand;
 
 /**
- * Command that runs in a loop until a condition returns false.
+ * Command that runs in a loop until a condition returns false. When scheduled
+ * cooperatively, the loop is run once per tick.
+ *
+ * <p>
+ * When run normally, the loop runs as fast as possible. Use
+ * {@link PacedLoopingCommand} for loops that only need to run periodically.
  *
  * @since June 17 13
  * @author Joel Gallant
  */
-public abstract class LoopingCommand implements Command {
+public abstract class LoopingCommand implements CooperativeCommand {
+
+    private boolean finished;
 
     /**
-     * Runs {@link #runLoop()} until {@link #continueLoop()} returns false.
+     * Runs {@link #runLoop()} until {@link #continueLoop()} returns false, or
+     * the thread is interrupted (the command was cancelled).
      */
     @Override
     public final void run() {
-        while (continueLoop()) {
+        while (!Thread.currentThread().isInterrupted() && continueLoop()) {
+            runLoop();
+        }
+    }
+
+    /**
+     * Starts the loop.
+     */
+    @Override
+    public void initialize() {
+        finished = false;
+    }
+
+    /**
+     * Runs {@link #runLoop()} once, if {@link #continueLoop()} returns true.
+     */
+    @Override
+    public final void execute() {
+        if (continueLoop()) {
             runLoop();
+        } else {
+            finished = true;
         }
     }
 
+    /**
+     * Returns whether {@link #continueLoop()} has returned false.
+     *
+     * @return if loop is done
+     */
+    @Override
+    public final boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Does nothing by default.
+     *
+     * @param interrupted if the loop was cancelled
+     */
+    @Override
+    public void end(boolean interrupted) {
+    }
+
     /**
      * Returns whether the loop should run again.
      *
@@ -0,0 +1,82 @@
+package edu.first.commands.common;
+
+import edu.first.command.Commands;
+import edu.first.command.CooperativeCommand;
+import edu.first.command.RequiringCommand;
+import edu.first.module.Module;
+
+/**
+ * Command that does all of its work in a single {@link #run()}, like setting an
+ * output. When scheduled, it is run once on the scheduler's thread and is
+ * finished right away, instead of being given to the
+ * {@link edu.first.command.CommandExecutor}.
+ *
+ * <p>
+ * It requires the objects that it sets, when they are {@link Module modules},
+ * so that only one command sets each of them at once. It can always be
+ * cancelled.
+ *
+ * @since October 18 26
+ * @author Joel Gallant
+ */
+public abstract class OneStepCommand implements CooperativeCommand, RequiringCommand {
+
+    private final Module[] requirements;
+
+    /**
+     * Constructs the command using the objects that it sets.
+     *
+     * @param outputs objects that the command sets, which are required if they
+     * are modules
+     */
+    protected OneStepCommand(Object... outputs) {
+        this.requirements = Commands.modulesOf(outputs);
+    }
+
+    @Override
+    public void initialize() {
+    }
+
+    /**
+     * Runs the command once. Same as {@link #run()}.
+     */
+    @Override
+    public final void execute() {
+        run();
+    }
+
+    /**
+     * Returns true, the command is done after one step.
+     *
+     * @return true
+     */
+    @Override
+    public final boolean isFinished() {
+        return true;
+    }
+
+    @Override
+    public void end(boolean interrupted) {
+    }
+
+    /**
+     * Returns the objects given to the constructor that are modules. The array
+     * is not copied, and should not be changed.
+     *
+     * @return modules that are required
+     */
+    @Override
+    public final Module[] getRequirements() {
+        return requirements;
+    }
+
+    /**
+     * Returns true, the command can always be cancelled.
+     *
+     * @return true
+     */
+    @Override
+    public final boolean isInterruptible() {
+        return true;
+    }
+}
@@ -0,0 +1,177 @@
+package edu.first.commands.common;
+
+import edu.first.command.CommandScheduler;
+import edu.first.command.CooperativeCommand;
+import edu.first.identifiers.Position;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Command that runs in a loop until a condition returns false, like
+ * {@link LoopingCommand}, but only runs the loop once every period instead of
+ * as fast as possible. A loop like "drive until the encoder reaches X" does not
+ * need to run more often than its sensors and controllers update, and spinning
+ * takes processor time away from the control loops.
+ *
+ * <p>
+ * Runs happen on multiples of the period from when the command starts, and
+ * runs that are missed because the loop was slow are skipped. Between runs, the
+ * thread is parked. An optional exit condition can be given, which is checked
+ * every millisecond between runs so that the command stops without waiting for
+ * the next run.
+ *
+ * <p>
+ * When scheduled cooperatively, the loop is run at most once per tick of the
+ * scheduler. Without a period, it is run on every tick, and when run normally
+ * it is run once every {@link CommandScheduler#getPeriod() period} of the
+ * shared scheduler.
+ *
+ * @since October 18 26
+ * @author Joel Gallant
+ */
+public abstract class PacedLoopingCommand implements CooperativeCommand {
+
+    private static final long EXIT_CHECK_PERIOD = 1000000;
+    private final long period;
+    private final Position exit;
+    private long next;
+    private boolean finished;
+
+    /**
+     * Constructs the command to run once per tick of the scheduler. When run
+     * normally, it is run once every {@link CommandScheduler#getPeriod()
+     * period} of the shared scheduler.
+     */
+    public PacedLoopingCommand() {
+        this(0, null);
+    }
+
+    /**
+     * Constructs the command to run once every period.
+     *
+     * @throws IllegalArgumentException when period is negative
+     * @param period seconds between every run of the loop
+     */
+    public PacedLoopingCommand(double period) {
+        this(period, null);
+    }
+
+    /**
+     * Constructs the command to run once every period, and stop as soon as
+     * the exit condition returns true.
+     *
+     * @throws IllegalArgumentException when period is negative
+     * @param period seconds between every run of the loop
+     * @param exit condition to stop the command, or null for none
+     */
+    public PacedLoopingCommand(double period, Position exit) {
+        if (period < 0) {
+            throw new IllegalArgumentException(period + " is not a valid period");
+        }
+        this.period = Math.round(period * 1e9);
+        this.exit = exit;
+    }
+
+    /**
+     * Runs {@link #runLoop()} once per period until {@link #continueLoop()}
+     * returns false, the exit condition returns true, or the thread is
+     * interrupted (the command was cancelled).
+     */
+    @Override
+    public final void run() {
+        long p = period > 0 ? period : Math.round(CommandScheduler.getInstance().getPeriod() * 1e9);
+        long deadline = System.nanoTime();
+        while (!Thread.currentThread().isInterrupted() && !exited() && continueLoop()) {
+            runLoop();
+            deadline = nextDeadline(deadline, p);
+            if (!waitUntil(deadline)) {
+                return;
+            }
+        }
+    }
+
+    // returns false if the loop should stop instead
+    private boolean waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(exit == null ? remaining : Math.min(remaining, EXIT_CHECK_PERIOD));
+            if (Thread.currentThread().isInterrupted() || exited()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean exited() {
+        return exit != null && exit.getPosition();
+    }
+
+    // skips deadlines that have already passed
+    private static long nextDeadline(long deadline, long period) {
+        deadline += period;
+        long late = System.nanoTime() - deadline;
+        if (late > 0) {
+            deadline += (late / period + 1) * period;
+        }
+        return deadline;
+    }
+
+    /**
+     * Starts the loop.
+     */
+    @Override
+    public void initialize() {
+        next = System.nanoTime();
+        finished = false;
+    }
+
+    /**
+     * Runs {@link #runLoop()} once if a period has passed since the last run.
+     */
+    @Override
+    public final void execute() {
+        if (exited()) {
+            finished = true;
+        } else if (period == 0 || System.nanoTime() - next >= 0) {
+            if (continueLoop()) {
+                runLoop();
+                if (period > 0) {
+                    next = nextDeadline(next, period);
+                }
+            } else {
+                finished = true;
+            }
+        }
+    }
+
+    /**
+     * Returns whether {@link #continueLoop()} has returned false or the exit
+     * condition has returned true.
+     *
+     * @return if loop is done
+     */
+    @Override
+    public final boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Does nothing by default.
+     *
+     * @param interrupted if the loop was cancelled
+     */
+    @Override
+    public void end(boolean interrupted) {
+    }
+
+    /**
+     * Returns whether the loop should run again.
+     *
+     * @return if loop should continue
+     */
+    public abstract boolean continueLoop();
+
+    /**
+     * Runs the actual instructions of the command.
+     */
+    public abstract void runLoop();
+}
@@ -1,19 +1,27 @@
 package edu.first.commands.common;
 
 import edu.first.command.Command;
+import edu.first.command.Commands;
+import edu.first.command.CooperativeCommand;
+import edu.first.command.RequiringCommand;
 import edu.first.identifiers.Input;
 import edu.first.identifiers.StaticInput;
+import edu.first.module.Module;
 
 /**
- * Runs the given command a given amount of times.
+ * Runs the given command a given amount of times. When scheduled
+ * cooperatively, the command is stepped until it finishes, then started again.
  *
  * @since June 17 13
  * @author Joel Gallant
  */
-public class RepeatingCommand implements Command {
+public class RepeatingCommand implements CooperativeCommand, RequiringCommand {
 
     private final Input t;
     private final Command command;
+    private CooperativeCommand cooperative;
+    private int times, count;
+    private boolean started;
 
     /**
      * Constructs the command using how many times to run it.
@@ -39,13 +47,88 @@ public class RepeatingCommand implements Command {
     }
 
     /**
-     * Runs the command the given amount of times.
+     * Runs the command the given amount of times. Stops early if the thread is
+     * interrupted (the command was cancelled).
      */
     @Override
     public void run() {
         int times = (int) t.get();
-        for (int x = 0; x < times; x++) {
+        for (int x = 0; x < times && !Thread.currentThread().isInterrupted(); x++) {
             command.run();
         }
     }
+
+    /**
+     * Checks how many times the command should run.
+     */
+    @Override
+    public void initialize() {
+        cooperative = Commands.asCooperative(command);
+        times = (int) t.get();
+        count = 0;
+        started = false;
+    }
+
+    /**
+     * Steps the command, starting it again if it finished last time.
+     */
+    @Override
+    public void execute() {
+        if (count >= times) {
+            return;
+        }
+        if (!started) {
+            cooperative.initialize();
+            started = true;
+        }
+        cooperative.execute();
+        if (cooperative.isFinished()) {
+            cooperative.end(false);
+            started = false;
+            count++;
+        }
+    }
+
+    /**
+     * Returns whether the command has been run the given amount of times.
+     *
+     * @return if repeating is done
+     */
+    @Override
+    public boolean isFinished() {
+        return count >= times;
+    }
+
+    /**
+     * Ends the command if it was in the middle of running.
+     *
+     * @param interrupted if repeating was cancelled
+     */
+    @Override
+    public void end(boolean interrupted) {
+        if (started) {
+            started = false;
+            cooperative.end(true);
+        }
+    }
+
+    /**
+     * Returns every module that the repeated command requires.
+     *
+     * @return modules that are required
+     */
+    @Override
+    public Module[] getRequirements() {
+        return Commands.getRequirements(command);
+    }
+
+    /**
+     * Returns true, repeating can always be cancelled.
+     *
+     * @return true
+     */
+    @Override
+    public boolean isInterruptible() {
+        return true;
+    }
 }
@@ -1,6 +1,5 @@
 package edu.first.commands.common;
 
-import edu.first.command.Command;
 import edu.first.identifiers.Input;
 import edu.first.identifiers.Output;
 import edu.first.identifiers.StaticInput;
@@ -12,7 +11,7 @@ import edu.first.identifiers.StaticInput;
  * @since June 13 13
  * @author Joel Gallant
  */
-public final class SetOutput implements Command {
+public final class SetOutput extends OneStepCommand {
 
     private final Output output;
     private final Input input;
@@ -25,6 +24,7 @@ public final class SetOutput implements Command {
      * @param input the input to get values from
      */
     public SetOutput(Output output, Input input) {
+        super(output);
         this.output = output;
         this.input = input;
     }
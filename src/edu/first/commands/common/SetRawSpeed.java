@@ -1,6 +1,5 @@
 package edu.first.commands.common;
 
-import edu.first.command.Command;
 import edu.first.identifiers.Input;
 import edu.first.identifiers.StaticInput;
 import edu.first.module.actuators.SpeedController;
@@ -12,7 +11,7 @@ import edu.first.module.actuators.SpeedController;
  * @since June 13 13
  * @author Joel Gallant
  */
-public final class SetRawSpeed implements Command {
+public final class SetRawSpeed extends OneStepCommand {
 
     private final SpeedController speedController;
     private final Input input;
@@ -24,6 +23,7 @@ public final class SetRawSpeed implements Command {
      * @param input speed to set to
      */
     public SetRawSpeed(SpeedController speedController, Input input) {
+        super(speedController);
         this.speedController = speedController;
         this.input = input;
     }
@@ -1,6 +1,5 @@
 package edu.first.commands.common;
 
-import edu.first.command.Command;
 import edu.first.identifiers.Position;
 import edu.first.identifiers.StaticPosition;
 import edu.first.identifiers.Switch;
@@ -12,7 +11,7 @@ import edu.first.identifiers.Switch;
  * @since June 13 13
  * @author Joel Gallant
  */
-public final class SetSwitch implements Command {
+public final class SetSwitch extends OneStepCommand {
 
     private final Switch s;
     private final Position position;
@@ -25,6 +24,7 @@ public final class SetSwitch implements Command {
      * @param position position to set switch to
      */
     public SetSwitch(Switch s, Position position) {
+        super(s);
         this.s = s;
         this.position = position;
     }
@@ -1,15 +1,16 @@
 package edu.first.commands.common;
 
-import edu.first.command.Command;
+import edu.first.command.CooperativeCommand;
 import edu.first.util.log.Logger;
 
 /**
  *
  * @author Joel Gallant <joelgallant236@gmail.com>
  */
-public class WaitCommand implements Command {
+public class WaitCommand implements CooperativeCommand {
 
     private final long period;
+    private long end;
 
     public WaitCommand(long period) {
         this.period = period;
@@ -19,12 +20,52 @@ public class WaitCommand implements Command {
         this.period = (long) (seconds * 1000);
     }
 
+    /**
+     * Waits for the time given. If the thread is interrupted (the command was
+     * cancelled), stops waiting and keeps the thread interrupted so that the
+     * commands around this one stop too.
+     */
     @Override
     public void run() {
         try {
             Thread.sleep(period);
         } catch (InterruptedException ex) {
-            Logger.getLogger(this).error("Waiting interrupted", ex);
+            Logger.getLogger(this).debug("Waiting interrupted");
+            Thread.currentThread().interrupt();
         }
     }
+
+    /**
+     * Starts the wait from the current time.
+     */
+    @Override
+    public void initialize() {
+        end = System.nanoTime() + period * 1000000L;
+    }
+
+    /**
+     * Does nothing, since waiting has no steps.
+     */
+    @Override
+    public void execute() {
+    }
+
+    /**
+     * Returns whether the time has passed.
+     *
+     * @return if waiting is done
+     */
+    @Override
+    public boolean isFinished() {
+        return System.nanoTime() - end >= 0;
+    }
+
+    /**
+     * Does nothing.
+     *
+     * @param interrupted if the wait was cancelled
+     */
+    @Override
+    public void end(boolean interrupted) {
+    }
 }
@@ -0,0 +1,129 @@
+package edu.first.commands.script;
+
+import edu.first.command.Command;
+import edu.first.identifiers.Function;
+import edu.first.identifiers.Input;
+import edu.first.identifiers.Output;
+import edu.first.identifiers.Switch;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The names that an autonomous script can use to refer to parts of the robot.
+ * Every output, switch, input, function and command that a script uses has to
+ * be bound to a name before the script is
+ * {@link ScriptCompiler#compile(String, ScriptBindings) compiled}.
+ *
+ * <pre>
+ * ScriptBindings bindings = new ScriptBindings();
+ * bindings.bindOutput("drive", drivetrain)
+ *         .bindSwitch("claw", clawSolenoid)
+ *         .bindCommand("shoot", new ShootCommand());
+ * </pre>
+ *
+ * Names are case sensitive, and each kind of binding has its own names, so a
+ * motor can be bound as both an output and an input with the same name.
+ *
+ * @since October 18 26
+ * @author Joel Gallant
+ */
+public final class ScriptBindings {
+
+    private final Map<String, Output> outputs = new HashMap<>();
+    private final Map<String, Switch> switches = new HashMap<>();
+    private final Map<String, Input> inputs = new HashMap<>();
+    private final Map<String, Function> functions = new HashMap<>();
+    private final Map<String, Command> commands = new HashMap<>();
+
+    /**
+     * Binds an output that can be used in {@code set} and {@code adjust}.
+     *
+     * @throws NullPointerException when name or output are null
+     * @param name name used in scripts
+     * @param output output to set
+     * @return this object, so calls can be chained
+     */
+    public ScriptBindings bindOutput(String name, Output output) {
+        outputs.put(check(name, output), output);
+        return this;
+    }
+
+    /**
+     * Binds a switch that can be used in {@code switch}.
+     *
+     * @throws NullPointerException when name or switch are null
+     * @param name name used in scripts
+     * @param s switch to set
+     * @return this object, so calls can be chained
+     */
+    public ScriptBindings bindSwitch(String name, Switch s) {
+        switches.put(check(name, s), s);
+        return this;
+    }
+
+    /**
+     * Binds an input that can be used in {@code adjust}.
+     *
+     * @throws NullPointerException when name or input are null
+     * @param name name used in scripts
+     * @param input input to read
+     * @return this object, so calls can be chained
+     */
+    public ScriptBindings bindInput(String name, Input input) {
+        inputs.put(check(name, input), input);
+        return this;
+    }
+
+    /**
+     * Binds a function that can be used in {@code adjust}.
+     *
+     * @throws NullPointerException when name or function are null
+     * @param name name used in scripts
+     * @param function function to apply
+     * @return this object, so calls can be chained
+     */
+    public ScriptBindings bindFunction(String name, Function function) {
+        functions.put(check(name, function), function);
+        return this;
+    }
+
+    /**
+     * Binds a command that can be used in {@code run}.
+     *
+     * @throws NullPointerException when name or command are null
+     * @param name name used in scripts
+     * @param command command to run
+     * @return this object, so calls can be chained
+     */
+    public ScriptBindings bindCommand(String name, Command command) {
+        commands.put(check(name, command), command);
+        return this;
+    }
+
+    Output getOutput(String name) {
+        return outputs.get(name);
+    }
+
+    Switch getSwitch(String name) {
+        return switches.get(name);
+    }
+
+    Input getInput(String name) {
+        return inputs.get(name);
+    }
+
+    Function getFunction(String name) {
+        return functions.get(name);
+    }
+
+    Command getCommand(String name) {
+        return commands.get(name);
+    }
+
+    private static String check(String name, Object value) {
+        if (name == null || value == null) {
+            throw new NullPointerException("Null binding given");
+        }
+        return name;
+    }
+}
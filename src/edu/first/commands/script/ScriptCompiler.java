@@ -0,0 +1,303 @@
+package edu.first.commands.script;
+
+import edu.first.command.Command;
+import edu.first.command.Commands;
+import edu.first.commands.CommandGroup;
+import edu.first.commands.ConcurrentCommandGroup;
+import edu.first.commands.common.Adjust;
+import edu.first.commands.common.RepeatingCommand;
+import edu.first.commands.common.SetOutput;
+import edu.first.commands.common.SetSwitch;
+import edu.first.commands.common.WaitCommand;
+import edu.first.identifiers.Function;
+import edu.first.identifiers.Input;
+import edu.first.identifiers.Output;
+import edu.first.identifiers.Switch;
+import edu.first.util.TextFiles;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiles autonomous scripts into commands. Scripts are text, so they can be
+ * changed without redeploying the code, and compiling them checks every line
+ * so that mistakes are found when the robot starts instead of in the middle of
+ * autonomous. The command that is returned can be run as many times as needed,
+ * so the usual pattern is to compile in {@link edu.first.robot.RobotMode#init()}
+ * and only start the command in autonomous.
+ *
+ * <p>
+ * A script is a list of statements, one per line, that are run in order.
+ * Blocks of statements are surrounded by braces, and cannot be empty. Anything
+ * after a {@code #} is a comment.
+ *
+ * <pre>
+ * # drive forward while lowering the arm, then score
+ * concurrent {
+ *     set drive 0.6
+ *     adjust arm armSetpoint
+ * }
+ * wait 1.5
+ * set drive 0
+ * switch claw off
+ * timeout 3 {
+ *     run shoot
+ * }
+ * </pre>
+ *
+ * Statements:
+ * <ul>
+ * <li> {@code set <output> <value>} - {@link SetOutput sets an output}
+ * <li> {@code switch <switch> on|off} - {@link SetSwitch sets a switch}
+ * <li> {@code adjust <output> <input> [function]} - {@link Adjust sets an
+ * output to an input} (through a function)
+ * <li> {@code wait <seconds>} - {@link WaitCommand waits}
+ * <li> {@code run <command>} - runs a command
+ * <li> {@code sequential { ... }} - runs the block in order
+ * <li> {@code concurrent { ... }} - runs every statement of the block at the
+ * same time, and waits for all of them
+ * <li> {@code race { ... }} - runs every statement of the block at the same
+ * time, until one finishes ({@link Commands#race(Command...)})
+ * <li> {@code timeout <seconds> { ... }} - runs the block in order, but stops
+ * it after the time ({@link Commands#withTimeout(Command, double)})
+ * <li> {@code repeat <times> { ... }} - runs the block in order, the given
+ * amount of times
+ * </ul>
+ *
+ * Names refer to the {@link ScriptBindings bindings} given to the compiler.
+ *
+ * @since October 18 26
+ * @author Joel Gallant
+ */
+public final class ScriptCompiler {
+
+    // cannot be subclassed or instantiated
+    private ScriptCompiler() throws IllegalAccessException {
+        throw new IllegalAccessException();
+    }
+
+    /**
+     * Reads the script from a file and compiles it.
+     *
+     * @throws IOException when reading the file causes an error
+     * @throws ScriptException when the script is not valid
+     * @throws NullPointerException when file or bindings are null
+     * @param file file containing the script
+     * @param bindings names that the script can use
+     * @return command that runs the script
+     */
+    public static Command compile(File file, ScriptBindings bindings) throws IOException, ScriptException {
+        return compile(TextFiles.getTextFromFile(file), bindings);
+    }
+
+    /**
+     * Compiles the script. Every line is checked, and every name must be bound.
+     *
+     * @throws ScriptException when the script is not valid
+     * @throws NullPointerException when script or bindings are null
+     * @param script text of the script
+     * @param bindings names that the script can use
+     * @return command that runs the script
+     */
+    public static Command compile(String script, ScriptBindings bindings) throws ScriptException {
+        if (script == null || bindings == null) {
+            throw new NullPointerException("Null script or bindings given");
+        }
+        Parser parser = new Parser(script.split("\r\n|\r|\n", -1), bindings);
+        List<Command> commands = parser.block(false);
+        return new Sequence(commands);
+    }
+
+    // commands in order, CommandGroup can only be made by subclassing
+    private static final class Sequence extends CommandGroup {
+
+        Sequence(List<Command> commands) {
+            for (Command command : commands) {
+                appendSequential(command);
+            }
+        }
+    }
+
+    private static final class Parser {
+
+        private final String[] lines;
+        private final ScriptBindings bindings;
+        // index of the next line to read
+        private int next;
+
+        Parser(String[] lines, ScriptBindings bindings) {
+            this.lines = lines;
+            this.bindings = bindings;
+        }
+
+        // reads statements until "}" (when nested) or the end of the script
+        List<Command> block(boolean nested) throws ScriptException {
+            int start = next;
+            List<Command> commands = new ArrayList<>();
+            while (next < lines.length) {
+                int line = next + 1;
+                String[] tokens = tokens(lines[next++]);
+                if (tokens.length == 0) {
+                    continue;
+                }
+                if (tokens[0].equals("}")) {
+                    if (!nested) {
+                        throw new ScriptException(line, "'}' without a block to close");
+                    } else if (tokens.length > 1) {
+                        throw new ScriptException(line, "Unexpected '" + tokens[1] + "' after '}'");
+                    }
+                    return commands;
+                }
+                commands.add(statement(line, tokens));
+            }
+            if (nested) {
+                throw new ScriptException(start, "Block is never closed with '}'");
+            }
+            return commands;
+        }
+
+        private Command statement(int line, String[] t) throws ScriptException {
+            switch (t[0]) {
+                case "set":
+                    args(line, t, 2);
+                    return new SetOutput(output(line, t[1]), number(line, t[2]));
+                case "switch":
+                    args(line, t, 2);
+                    return new SetSwitch(switchNamed(line, t[1]), on(line, t[2]));
+                case "adjust":
+                    if (t.length != 3 && t.length != 4) {
+                        throw new ScriptException(line, "'adjust' takes an output, an input and an optional function");
+                    }
+                    return new Adjust(input(line, t[2]), output(line, t[1]),
+                            t.length == 4 ? function(line, t[3]) : new Function.DefaultFunction());
+                case "wait":
+                    args(line, t, 1);
+                    return new WaitCommand(positive(line, t[1]));
+                case "run":
+                    args(line, t, 1);
+                    return command(line, t[1]);
+                case "sequential":
+                    opens(line, t, 1);
+                    return new Sequence(body(line, t));
+                case "concurrent":
+                    opens(line, t, 1);
+                    return new ConcurrentCommandGroup(body(line, t));
+                case "race":
+                    opens(line, t, 1);
+                    List<Command> racing = body(line, t);
+                    return Commands.race(racing.toArray(new Command[racing.size()]));
+                case "timeout":
+                    opens(line, t, 2);
+                    double seconds = positive(line, t[1]);
+                    if (seconds == 0) {
+                        throw new ScriptException(line, "Timeout must be longer than 0");
+                    }
+                    return Commands.withTimeout(new Sequence(body(line, t)), seconds);
+                case "repeat":
+                    opens(line, t, 2);
+                    double times = number(line, t[1]);
+                    if (times < 0 || times != Math.floor(times)) {
+                        throw new ScriptException(line, t[1] + " is not a valid amount of times");
+                    }
+                    return new RepeatingCommand((int) times, new Sequence(body(line, t)));
+                default:
+                    throw new ScriptException(line, "Unknown statement '" + t[0] + "'");
+            }
+        }
+
+        // block of a statement, which must have at least one statement
+        private List<Command> body(int line, String[] t) throws ScriptException {
+            List<Command> commands = block(true);
+            if (commands.isEmpty()) {
+                throw new ScriptException(line, "'" + t[0] + "' block is empty");
+            }
+            return commands;
+        }
+
+        private static String[] tokens(String line) {
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            line = line.trim();
+            return line.isEmpty() ? new String[0] : line.split("\\s+");
+        }
+
+        // statement name followed by exactly count arguments
+        private static void args(int line, String[] t, int count) throws ScriptException {
+            if (t.length != count + 1) {
+                throw new ScriptException(line, "'" + t[0] + "' takes " + count
+                        + (count == 1 ? " argument" : " arguments"));
+            }
+        }
+
+        // block statement with count tokens before the "{"
+        private static void opens(int line, String[] t, int count) throws ScriptException {
+            if (t.length != count + 1 || !t[count].equals("{")) {
+                throw new ScriptException(line, "'" + t[0] + "' must be followed by "
+                        + (count > 1 ? "a number and " : "") + "'{'");
+            }
+        }
+
+        private static double number(int line, String s) throws ScriptException {
+            try {
+                double d = Double.parseDouble(s);
+                if (Double.isNaN(d) || Double.isInfinite(d)) {
+                    throw new NumberFormatException();
+                }
+                return d;
+            } catch (NumberFormatException ex) {
+                throw new ScriptException(line, "'" + s + "' is not a number");
+            }
+        }
+
+        private static double positive(int line, String s) throws ScriptException {
+            double d = number(line, s);
+            if (d < 0) {
+                throw new ScriptException(line, s + " is negative");
+            }
+            return d;
+        }
+
+        private static boolean on(int line, String s) throws ScriptException {
+            switch (s) {
+                case "on":
+                case "true":
+                    return true;
+                case "off":
+                case "false":
+                    return false;
+                default:
+                    throw new ScriptException(line, "'" + s + "' is not on or off");
+            }
+        }
+
+        private Output output(int line, String name) throws ScriptException {
+            return found(line, bindings.getOutput(name), "output", name);
+        }
+
+        private Switch switchNamed(int line, String name) throws ScriptException {
+            return found(line, bindings.getSwitch(name), "switch", name);
+        }
+
+        private Input input(int line, String name) throws ScriptException {
+            return found(line, bindings.getInput(name), "input", name);
+        }
+
+        private Function function(int line, String name) throws ScriptException {
+            return found(line, bindings.getFunction(name), "function", name);
+        }
+
+        private Command command(int line, String name) throws ScriptException {
+            return found(line, bindings.getCommand(name), "command", name);
+        }
+
+        private static <T> T found(int line, T value, String kind, String name) throws ScriptException {
+            if (value == null) {
+                throw new ScriptException(line, "No " + kind + " named '" + name + "'");
+            }
+            return value;
+        }
+    }
+}
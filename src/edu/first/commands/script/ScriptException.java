@@ -0,0 +1,35 @@
+package edu.first.commands.script;
+
+/**
+ * Exception thrown when an autonomous script is not valid. The message says
+ * what is wrong, and on which line of the script.
+ *
+ * @since October 18 26
+ * @author Joel Gallant
+ */
+public class ScriptException extends Exception {
+
+    private static final long serialVersionUID = 5211432209460725301L;
+    private final int line;
+
+    /**
+     * Constructs the exception with the line that is not valid and a
+     * description of what is wrong with it.
+     *
+     * @param line line number in the script, starting at 1
+     * @param s the String that describes what is wrong
+     */
+    public ScriptException(int line, String s) {
+        super("Line " + line + ": " + s);
+        this.line = line;
+    }
+
+    /**
+     * Returns the line of the script that is not valid, starting at 1.
+     *
+     * @return line number
+     */
+    public int getLine() {
+        return line;
+    }
+}
@@ -4,9 +4,13 @@
  */
 package edu.first.main;
 
+import edu.first.command.CommandExecutor;
+import edu.first.command.CommandScheduler;
 import edu.first.robot.IterativeRobotAdapter;
 import edu.first.robot.RobotMode;
 import edu.first.robot.SafeRobotMode;
+import edu.first.util.DriverstationInfo;
+import edu.first.util.log.Logger;
 import edu.wpi.first.wpilibj.IterativeRobot;
 
 /**
@@ -27,6 +31,10 @@ import edu.wpi.first.wpilibj.IterativeRobot;
  * project, you must also update the manifest file in the resource directory.
  * (<i>/resources/META-INF/MANIFEST.MF</i> under "MIDlet-1")</b>
  *
+ * Every periodic method runs a tick of the
+ * {@link CommandScheduler#getInstance() command scheduler} after the robot
+ * mode's periodic method.
+ *
  * This class is not thread safe and should <b>never</b> be manually
  * constructed, but by mandate (VM) its constructor needs to be public.
  *
@@ -39,6 +47,8 @@ public final class GamePeriods extends IterativeRobot {
     private static GameMode previousGameMode = null;
     // The current game mode - change to yours
     private static RobotMode robotMode;
+    // Commands started in a new thread since this mark belong to the current mode
+    private static long modeMark = Long.MAX_VALUE;
 
     /**
      * Please never use this!
@@ -55,7 +65,10 @@ public final class GamePeriods extends IterativeRobot {
      */
     @Override
     public void robotInit() {
+        DriverstationInfo.update();
         robotMode.init();
+        // background commands from here are kept for the whole match
+        modeMark = CommandExecutor.getInstance().mark();
     }
 
     /**
@@ -68,6 +81,7 @@ public final class GamePeriods extends IterativeRobot {
      */
     @Override
     public void disabledInit() {
+        DriverstationInfo.update();
         finishAndNewMode(GameMode.DISABLED);
         robotMode.initDisabled();
     }
@@ -82,7 +96,9 @@ public final class GamePeriods extends IterativeRobot {
      */
     @Override
     public void disabledPeriodic() {
+        DriverstationInfo.update();
         robotMode.periodicDisabled();
+        CommandScheduler.getInstance().run();
     }
 
     /**
@@ -90,6 +106,7 @@ public final class GamePeriods extends IterativeRobot {
      */
     @Override
     public void autonomousInit() {
+        DriverstationInfo.update();
         finishAndNewMode(GameMode.AUTONOMOUS);
         robotMode.initAutonomous();
     }
@@ -104,7 +121,9 @@ public final class GamePeriods extends IterativeRobot {
      */
     @Override
     public void autonomousPeriodic() {
+        DriverstationInfo.update();
         robotMode.periodicAutonomous();
+        CommandScheduler.getInstance().run();
     }
 
     /**
@@ -112,6 +131,7 @@ public final class GamePeriods extends IterativeRobot {
      */
     @Override
     public void teleopInit() {
+        DriverstationInfo.update();
         finishAndNewMode(GameMode.TELEOPERATED);
         robotMode.initTeleoperated();
     }
@@ -126,7 +146,9 @@ public final class GamePeriods extends IterativeRobot {
      */
     @Override
     public void teleopPeriodic() {
+        DriverstationInfo.update();
         robotMode.periodicTeleoperated();
+        CommandScheduler.getInstance().run();
     }
 
     /**
@@ -134,6 +156,7 @@ public final class GamePeriods extends IterativeRobot {
      */
     @Override
     public void testInit() {
+        DriverstationInfo.update();
         finishAndNewMode(GameMode.TEST);
         robotMode.initTest();
     }
@@ -148,19 +171,29 @@ public final class GamePeriods extends IterativeRobot {
      */
     @Override
     public void testPeriodic() {
+        DriverstationInfo.update();
         robotMode.periodicTest();
+        CommandScheduler.getInstance().run();
     }
 
     /**
      * Finishes the {@code GameMode} given the last time this method was run.
+     * Commands that were scheduled or started in a new thread in the last mode
+     * are cancelled. Commands started in a new thread by
+     * {@link RobotMode#init()} keep running.
      *
      * @param newMode the mode that the user is headed into which will be ended
      * the next time this method is run
      */
     private void finishAndNewMode(GameMode newMode) {
+        CommandScheduler.getInstance().cancelAll();
+        CommandExecutor executor = CommandExecutor.getInstance();
+        executor.cancelSince(modeMark);
+        modeMark = executor.mark();
         if (previousGameMode != null) {
             previousGameMode.end();
         }
+        Logger.flushAllLater();
         previousGameMode = newMode;
     }
 
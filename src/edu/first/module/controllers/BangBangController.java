@@ -59,19 +59,13 @@ public class BangBangController extends Controller implements RateSensor, RateAc
     private static final double defaultLoopTime = 0.02;
     private final Input input;
     private final Output output;
-    // Controller variables
-    // uses lock so user can't lock controller accidentally using "this"
+    // Settings are replaced as a whole, so the loop never waits on a lock.
+    // Uses lock (only between writers) so user can't lock accidentally.
     private final Object lock = new Object();
-    private boolean coast;
-    private boolean speedUp;
-    private boolean reversed = false;
-    private double setpoint = 0;
-    private double maxOutput = 1;
-    private double spinupInput = 0;
-    private double spinupOutput = 1;
-    private double tolerance = 0;
-    private double prevResult;
-    private double prevInput;
+    private volatile Settings settings = new Settings();
+    // Results are only written by the loop thread
+    private volatile double prevResult;
+    private volatile double prevInput;
 
     /**
      * Constructs the controller using its input and output. Uses the default
@@ -94,7 +88,22 @@ public class BangBangController extends Controller implements RateSensor, RateAc
      * @param loopTime time in seconds each loop should run
      */
     public BangBangController(Input input, Output output, double loopTime) {
-        super(loopTime, LoopType.FIXED_RATE);
+        this(input, output, loopTime, LoopType.FIXED_RATE);
+    }
+
+    /**
+     * Constructs the controller using its input and output. Loops at
+     * {@code loopTime} using the given type of loop, like
+     * {@link LoopType#PRECISE_RATE} for fast loops.
+     *
+     * @throws NullPointerException when input or output are null
+     * @param input object to receive input from
+     * @param output object to send output to
+     * @param loopTime time in seconds each loop should run
+     * @param loopType how the loop is timed
+     */
+    public BangBangController(Input input, Output output, double loopTime, LoopType loopType) {
+        super(loopTime, loopType);
         if (input == null) {
             throw new NullPointerException("Null input given");
         } else if (output == null) {
@@ -115,7 +124,23 @@ public class BangBangController extends Controller implements RateSensor, RateAc
      * will happen
      */
     public BangBangController(Input input, Output output, int loopTimeHertz) {
-        super(loopTimeHertz, LoopType.FIXED_RATE);
+        this(input, output, loopTimeHertz, LoopType.FIXED_RATE);
+    }
+
+    /**
+     * Constructs the controller using its input and output. Loops at
+     * {@code loopTimeHertz} using the given type of loop, like
+     * {@link LoopType#PRECISE_RATE} for fast loops.
+     *
+     * @throws NullPointerException when input or output are null
+     * @param input object to receive input from
+     * @param output object to send output to
+     * @param loopTimeHertz the hertz value that represents how fast execution
+     * will happen
+     * @param loopType how the loop is timed
+     */
+    public BangBangController(Input input, Output output, int loopTimeHertz, LoopType loopType) {
+        super(loopTimeHertz, loopType);
         if (input == null) {
             throw new NullPointerException("Null input given");
         } else if (output == null) {
@@ -132,7 +157,9 @@ public class BangBangController extends Controller implements RateSensor, RateAc
      */
     public void setSetpoint(double setpoint) {
         synchronized (lock) {
-            this.setpoint = setpoint;
+            Settings s = settings.copy();
+            s.setpoint = setpoint;
+            settings = s;
         }
     }
 
@@ -146,7 +173,9 @@ public class BangBangController extends Controller implements RateSensor, RateAc
      */
     public void setCoast(boolean coast) {
         synchronized (lock) {
-            this.coast = coast;
+            Settings s = settings.copy();
+            s.coast = coast;
+            settings = s;
         }
     }
 
@@ -164,7 +193,9 @@ public class BangBangController extends Controller implements RateSensor, RateAc
      */
     public void setSpeedUp(boolean speedUp) {
         synchronized (lock) {
-            this.speedUp = speedUp;
+            Settings s = settings.copy();
+            s.speedUp = speedUp;
+            settings = s;
         }
     }
 
@@ -178,7 +209,9 @@ public class BangBangController extends Controller implements RateSensor, RateAc
      */
     public void setSpinupInput(double spinupInput) {
         synchronized (lock) {
-            this.spinupInput = spinupInput;
+            Settings s = settings.copy();
+            s.spinupInput = spinupInput;
+            settings = s;
         }
     }
 
@@ -193,7 +226,9 @@ public class BangBangController extends Controller implements RateSensor, RateAc
      */
     public void setSpinupOutput(double spinupOutput) {
         synchronized (lock) {
-            this.spinupOutput = spinupOutput;
+            Settings s = settings.copy();
+            s.spinupOutput = spinupOutput;
+            settings = s;
         }
     }
 
@@ -205,7 +240,9 @@ public class BangBangController extends Controller implements RateSensor, RateAc
      */
     public void setReversed(boolean reversed) {
         synchronized (lock) {
-            this.reversed = reversed;
+            Settings s = settings.copy();
+            s.reversed = reversed;
+            settings = s;
         }
     }
 
@@ -219,7 +256,9 @@ public class BangBangController extends Controller implements RateSensor, RateAc
      */
     public void setMaxOutput(double maxOutput) {
         synchronized (lock) {
-            this.maxOutput = Math.abs(maxOutput);
+            Settings s = settings.copy();
+            s.maxOutput = Math.abs(maxOutput);
+            settings = s;
         }
     }
 
@@ -230,7 +269,11 @@ public class BangBangController extends Controller implements RateSensor, RateAc
      * @param tolerance how far off input can be to be considered "on target"
      */
     public void setTolerance(double tolerance) {
-        this.tolerance = tolerance;
+        synchronized (lock) {
+            Settings s = settings.copy();
+            s.tolerance = tolerance;
+            settings = s;
+        }
     }
 
     /**
@@ -241,9 +284,7 @@ public class BangBangController extends Controller implements RateSensor, RateAc
      * @return if controller is in "speed up" mode
      */
     public boolean isSpeedUp() {
-        synchronized (lock) {
-            return speedUp;
-        }
+        return settings.speedUp;
     }
 
     /**
@@ -258,9 +299,7 @@ public class BangBangController extends Controller implements RateSensor, RateAc
      * @return maximum input that will be considered "spinning up"
      */
     public double getSpinupInput() {
-        synchronized (lock) {
-            return spinupInput;
-        }
+        return settings.spinupInput;
     }
 
     /**
@@ -275,9 +314,7 @@ public class BangBangController extends Controller implements RateSensor, RateAc
      * @return output to use when controller is "spinning up"
      */
     public double getSpinupOutput() {
-        synchronized (lock) {
-            return spinupOutput;
-        }
+        return settings.spinupOutput;
     }
 
     /**
@@ -287,9 +324,7 @@ public class BangBangController extends Controller implements RateSensor, RateAc
      * @return highest possible output
      */
     public double getMaxOutput() {
-        synchronized (lock) {
-            return maxOutput;
-        }
+        return settings.maxOutput;
     }
 
     /**
@@ -298,9 +333,7 @@ public class BangBangController extends Controller implements RateSensor, RateAc
      * @return current goal
      */
     public double getSetpoint() {
-        synchronized (lock) {
-            return setpoint;
-        }
+        return settings.setpoint;
     }
 
     /**
@@ -310,9 +343,7 @@ public class BangBangController extends Controller implements RateSensor, RateAc
      * @return how far off input is from setpoint
      */
     public double getError() {
-        synchronized (lock) {
-            return setpoint - prevInput;
-        }
+        return settings.setpoint - prevInput;
     }
 
     /**
@@ -321,9 +352,7 @@ public class BangBangController extends Controller implements RateSensor, RateAc
      * @return last set output
      */
     public double getPrevResult() {
-        synchronized (lock) {
-            return prevResult;
-        }
+        return prevResult;
     }
 
     /**
@@ -332,9 +361,7 @@ public class BangBangController extends Controller implements RateSensor, RateAc
      * @return last input received
      */
     public double getPrevInput() {
-        synchronized (lock) {
-            return prevInput;
-        }
+        return prevInput;
     }
 
     /**
@@ -344,7 +371,7 @@ public class BangBangController extends Controller implements RateSensor, RateAc
      * @return how far off input can be to be considered "on target"
      */
     public double getTolerance() {
-        return tolerance;
+        return settings.tolerance;
     }
 
     /**
@@ -354,7 +381,7 @@ public class BangBangController extends Controller implements RateSensor, RateAc
      * @return if controller is close enough to target
      */
     public boolean onTarget() {
-        return Math.abs(getError()) < tolerance;
+        return Math.abs(getError()) < settings.tolerance;
     }
 
     /**
@@ -373,16 +400,16 @@ public class BangBangController extends Controller implements RateSensor, RateAc
         double sSpinupOutput;
         double sMaxOutput;
 
-        // Snapshot values to reduce time spent in synchronized blocks
-        synchronized (lock) {
-            sCoast = this.coast;
-            sSpeedUp = this.speedUp;
-            sReversed = this.reversed;
-            sSetpoint = this.setpoint;
-            sSpinupInput = this.spinupInput;
-            sSpinupOutput = this.spinupOutput;
-            sMaxOutput = this.maxOutput;
-        }
+        // Settings are never changed once published, so one read is a
+        // consistent snapshot
+        Settings snapshot = this.settings;
+        sCoast = snapshot.coast;
+        sSpeedUp = snapshot.speedUp;
+        sReversed = snapshot.reversed;
+        sSetpoint = snapshot.setpoint;
+        sSpinupInput = snapshot.spinupInput;
+        sSpinupOutput = snapshot.spinupOutput;
+        sMaxOutput = snapshot.maxOutput;
 
         if (sCoast) {
             result = 0;
@@ -404,10 +431,8 @@ public class BangBangController extends Controller implements RateSensor, RateAc
 
         output.set(result);
 
-        synchronized (lock) {
-            prevInput = in;
-            prevResult = result;
-        }
+        prevInput = in;
+        prevResult = result;
     }
 
     /**
@@ -418,9 +443,7 @@ public class BangBangController extends Controller implements RateSensor, RateAc
      */
     @Override
     public double get() {
-        synchronized (lock) {
-            return prevInput;
-        }
+        return prevInput;
     }
 
     /**
@@ -432,7 +455,9 @@ public class BangBangController extends Controller implements RateSensor, RateAc
     @Override
     public void set(double value) {
         synchronized (lock) {
-            this.setpoint = value;
+            Settings s = settings.copy();
+            s.setpoint = value;
+            settings = s;
         }
     }
 
@@ -444,9 +469,7 @@ public class BangBangController extends Controller implements RateSensor, RateAc
      */
     @Override
     public double getRate() {
-        synchronized (lock) {
-            return prevInput;
-        }
+        return prevInput;
     }
 
     /**
@@ -458,7 +481,39 @@ public class BangBangController extends Controller implements RateSensor, RateAc
     @Override
     public void setRate(double rate) {
         synchronized (lock) {
-            this.setpoint = rate;
+            Settings s = settings.copy();
+            s.setpoint = rate;
+            settings = s;
+        }
+    }
+
+    /**
+     * The settings of the controller. An instance is never modified after it
+     * has been published to {@link BangBangController#settings}, changes are
+     * made to a copy which then replaces it.
+     */
+    private static final class Settings {
+
+        private boolean coast;
+        private boolean speedUp;
+        private boolean reversed = false;
+        private double setpoint = 0;
+        private double maxOutput = 1;
+        private double spinupInput = 0;
+        private double spinupOutput = 1;
+        private double tolerance = 0;
+
+        Settings copy() {
+            Settings s = new Settings();
+            s.coast = coast;
+            s.speedUp = speedUp;
+            s.reversed = reversed;
+            s.setpoint = setpoint;
+            s.maxOutput = maxOutput;
+            s.spinupInput = spinupInput;
+            s.spinupOutput = spinupOutput;
+            s.tolerance = tolerance;
+            return s;
         }
     }
 }
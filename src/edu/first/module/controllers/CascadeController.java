@@ -0,0 +1,187 @@
+package edu.first.module.controllers;
+
+/**
+ * Controller that runs two controllers in a cascade, where the output of the
+ * outer controller is the setpoint of the inner one (ex. a position loop over a
+ * velocity loop). Both are run in the same tick of one loop, outer first, so
+ * the inner controller always sees the newest setpoint right away instead of up
+ * to a whole period later.
+ *
+ * <p>
+ * The outer controller's output should be the inner controller, which is done
+ * by giving the inner controller as the outer one's {@code Output}. When both
+ * are {@link PIDController PIDControllers}, the cascade reads the outer result
+ * and gives it to the inner controller directly for that tick, without going
+ * through {@link PIDController#setSetpoint(double)}. That way nothing is
+ * published or allocated on every tick, and the velocity and acceleration that
+ * were given to the inner controller for feedforward are kept.
+ *
+ * <pre>
+ * PIDController velocity = new PIDController(encoderRate, motor, 200);
+ * PIDController position = new PIDController(encoder, velocity, 50);
+ * CascadeController cascade = new CascadeController(position, velocity, 4);
+ * </pre>
+ *
+ * <p>
+ * The outer controller can be run less often than the inner one by giving a
+ * decimation. With a decimation of 4, the outer controller is run on every
+ * fourth tick, just before the inner controller.
+ *
+ * <p>
+ * The controllers given are run by this controller, so they should
+ * <b>not</b> be enabled themselves. Enable this controller instead.
+ *
+ * @since October 18 26
+ * @author Joel Gallant
+ */
+public class CascadeController extends Controller {
+
+    private final Controller outer;
+    private final Controller inner;
+    // set when both are PID controllers, to skip the outer one's output
+    private final PIDController outerPID, innerPID;
+    private final int decimation;
+    // only used by the loop thread
+    private int count;
+    private double setpoint;
+
+    /**
+     * Constructs the cascade using the two controllers, running both on every
+     * tick at the inner controller's loop time.
+     *
+     * @throws NullPointerException when a controller is null
+     * @param outer controller whose output is the setpoint of inner
+     * @param inner controller that is run after outer
+     */
+    public CascadeController(Controller outer, Controller inner) {
+        this(outer, inner, 1);
+    }
+
+    /**
+     * Constructs the cascade using the two controllers, running the outer
+     * controller once every {@code decimation} ticks of the inner controller's
+     * loop time.
+     *
+     * @throws NullPointerException when a controller is null
+     * @throws IllegalArgumentException when decimation is less than 1
+     * @param outer controller whose output is the setpoint of inner
+     * @param inner controller that is run after outer
+     * @param decimation how many ticks happen for each run of outer
+     */
+    public CascadeController(Controller outer, Controller inner, int decimation) {
+        this(outer, inner, decimation, LoopType.FIXED_RATE);
+    }
+
+    /**
+     * Constructs the cascade using the two controllers, running the outer
+     * controller once every {@code decimation} ticks of the inner controller's
+     * loop time.
+     *
+     * @throws NullPointerException when a controller is null
+     * @throws IllegalArgumentException when decimation is less than 1
+     * @param outer controller whose output is the setpoint of inner
+     * @param inner controller that is run after outer
+     * @param decimation how many ticks happen for each run of outer
+     * @param loopType kind of execution of the loop
+     */
+    public CascadeController(Controller outer, Controller inner, int decimation, LoopType loopType) {
+        super(loopTime(outer, inner), loopType);
+        if (decimation < 1) {
+            throw new IllegalArgumentException(decimation + " is not a valid decimation");
+        }
+        this.outer = outer;
+        this.inner = inner;
+        this.decimation = decimation;
+        if (outer instanceof PIDController && inner instanceof PIDController) {
+            this.outerPID = (PIDController) outer;
+            this.innerPID = (PIDController) inner;
+        } else {
+            this.outerPID = null;
+            this.innerPID = null;
+        }
+    }
+
+    // checked before the super constructor uses the controllers
+    private static double loopTime(Controller outer, Controller inner) {
+        if (outer == null || inner == null) {
+            throw new NullPointerException("Null controller given");
+        }
+        return inner.getLoopTime();
+    }
+
+    /**
+     * Returns the controller that is run first, whose output is the setpoint of
+     * the inner controller.
+     *
+     * @return outer controller
+     */
+    public Controller getOuter() {
+        return outer;
+    }
+
+    /**
+     * Returns the controller that is run on every tick, after the outer
+     * controller.
+     *
+     * @return inner controller
+     */
+    public Controller getInner() {
+        return inner;
+    }
+
+    /**
+     * Returns how many ticks happen for each run of the outer controller.
+     *
+     * @return decimation of outer controller
+     */
+    public int getDecimation() {
+        return decimation;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Also restarts both controllers' measurement of time between executions,
+     * and runs the outer controller on the first tick.
+     */
+    @Override
+    protected void enableModule() {
+        restart();
+        super.enableModule();
+    }
+
+    @Override
+    void restart() {
+        count = 0;
+        outer.restart();
+        inner.restart();
+    }
+
+    /**
+     * Runs the outer controller (if this is one of its ticks), then the inner
+     * controller.
+     */
+    @Override
+    public final void run() {
+        if (innerPID != null) {
+            if (count == 0) {
+                setpoint = outerPID.compute();
+            }
+            advance();
+            innerPID.run(setpoint);
+        } else {
+            if (count == 0) {
+                outer.run();
+            }
+            advance();
+            inner.run();
+        }
+    }
+
+    private void advance() {
+        if (++count >= decimation) {
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package edu.first.module.controllers;
+
+import edu.first.util.log.Logger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs control loops on a small, fixed set of high-priority threads instead of
+ * giving every loop its own {@link java.util.Timer}. Every {@link Controller}
+ * registers with the {@link #getDefault() default scheduler} when it is
+ * enabled, so a robot with eight controllers only has one loop thread.
+ *
+ * <p>
+ * Loops are ticked in a fixed order every period. All loops that share a period
+ * are assigned to the same thread, and are run back to back in the order they
+ * were registered. Deadlines are aligned to multiples of the loop's period from
+ * a common epoch, so two loops at the same rate always run in the same phase.
+ *
+ * <p>
+ * Loops with {@link Controller.LoopType#PRECISE_RATE} are woken up at their
+ * exact deadline. The thread sleeps until shortly before the deadline, then
+ * parks, and busy-spins for the last {@link #setSpinThreshold(long) few hundred
+ * microseconds}.
+ *
+ * <p>
+ * The threads are only started when the first loop is registered, and are
+ * daemon threads so that they never keep the program alive.
+ *
+ * @since October 18 26
+ * @author Joel Gallant
+ */
+public final class ControlLoopScheduler {
+
+    // Object.wait can oversleep by about a millisecond
+    private static final long COARSE_MARGIN = 1500000;
+    private static final Object defaultLock = new Object();
+    private static ControlLoopScheduler defaultScheduler;
+    private final Worker[] workers;
+    // common epoch so that loops with the same period are phase-aligned
+    private final long epoch = System.nanoTime();
+    private volatile long spinThreshold = 200000;
+
+    /**
+     * Returns the scheduler that controllers use unless told otherwise. It uses
+     * one thread at {@link Thread#MAX_PRIORITY}.
+     *
+     * @return the shared scheduler
+     */
+    public static ControlLoopScheduler getDefault() {
+        synchronized (defaultLock) {
+            if (defaultScheduler == null) {
+                defaultScheduler = new ControlLoopScheduler("Control Loop", 1, Thread.MAX_PRIORITY);
+            }
+            return defaultScheduler;
+        }
+    }
+
+    /**
+     * Constructs a scheduler with its own pool of threads. Most robots should
+     * use the {@link #getDefault() default scheduler}, this is only useful when
+     * loops need to be spread over more than one core.
+     *
+     * @throws IllegalArgumentException when threads is less than 1
+     * @param name prefix for the names of the loop threads
+     * @param threads how many threads loops are spread across
+     * @param priority priority of the loop threads
+     */
+    public ControlLoopScheduler(String name, int threads, int priority) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(threads + " is not a valid amount of threads");
+        }
+        workers = new Worker[threads];
+        for (int x = 0; x < threads; x++) {
+            workers[x] = new Worker(threads == 1 ? name : name + " " + x, priority);
+        }
+    }
+
+    /**
+     * Registers a loop to be run every {@code periodNanos}. The loop starts on
+     * the next deadline that is aligned with its period.
+     *
+     * <p>
+     * With {@link Controller.LoopType#FIXED_RATE}, ticks that were missed
+     * because the thread was busy are skipped rather than run in a burst. With
+     * {@link Controller.LoopType#FIXED_DELAY}, the next deadline is always
+     * {@code periodNanos} after the end of the last run. With
+     * {@link Controller.LoopType#PRECISE_RATE}, deadlines are the same as a
+     * fixed-rate loop but are waited for precisely.
+     *
+     * @throws NullPointerException when loop or loopType are null
+     * @throws IllegalArgumentException when the period is not positive
+     * @param loop the loop to run
+     * @param periodNanos time in nanoseconds between runs
+     * @param loopType how deadlines are computed
+     * @return the registration, used to {@link #unregister(Registration)} the
+     * loop
+     */
+    public Registration register(Runnable loop, long periodNanos, Controller.LoopType loopType) {
+        if (loop == null) {
+            throw new NullPointerException("Null loop given");
+        } else if (loopType == null) {
+            throw new NullPointerException("Null loop type given");
+        } else if (periodNanos <= 0) {
+            throw new IllegalArgumentException(periodNanos + " is not a valid period");
+        }
+        Registration registration = new Registration(loop, periodNanos, loopType);
+        synchronized (workers) {
+            workerFor(periodNanos).add(registration);
+        }
+        return registration;
+    }
+
+    /**
+     * Stops running the loop. If the loop is in the middle of running, it will
+     * finish that run but will never be started again.
+     *
+     * @param registration the registration returned by
+     * {@link #register(Runnable, long, Controller.LoopType)}
+     */
+    public void unregister(Registration registration) {
+        if (registration != null && registration.worker != null) {
+            registration.worker.remove(registration);
+        }
+    }
+
+    /**
+     * Sets how long before the deadline of a
+     * {@link Controller.LoopType#PRECISE_RATE} loop the thread starts
+     * busy-spinning instead of parking. Larger values are more accurate but
+     * use more CPU. The default is 200 microseconds.
+     *
+     * @throws IllegalArgumentException when spinNanos is negative
+     * @param spinNanos time in nanoseconds to spin before each deadline
+     */
+    public void setSpinThreshold(long spinNanos) {
+        if (spinNanos < 0) {
+            throw new IllegalArgumentException(spinNanos + " is not a valid spin time");
+        }
+        this.spinThreshold = spinNanos;
+    }
+
+    // loops with the same period share a thread, others go to the least loaded
+    private Worker workerFor(long periodNanos) {
+        Worker best = workers[0];
+        for (Worker w : workers) {
+            if (w.hasPeriod(periodNanos)) {
+                return w;
+            }
+            if (w.size() < best.size()) {
+                best = w;
+            }
+        }
+        return best;
+    }
+
+    // next deadline after "now" that is a multiple of period from the epoch
+    private long alignedDeadline(long now, long period) {
+        return now + period - ((now - epoch) % period);
+    }
+
+    /**
+     * A loop that has been registered with a scheduler.
+     */
+    public static final class Registration {
+
+        private final Runnable loop;
+        private final long period;
+        private final Controller.LoopType loopType;
+        private volatile Worker worker;
+        private long deadline;
+
+        private Registration(Runnable loop, long period, Controller.LoopType loopType) {
+            this.loop = loop;
+            this.period = period;
+            this.loopType = loopType;
+        }
+
+        /**
+         * Returns the time in nanoseconds between runs of the loop.
+         *
+         * @return period of the loop
+         */
+        public long getPeriodNanos() {
+            return period;
+        }
+    }
+
+    private final class Worker implements Runnable {
+
+        private final Object lock = new Object();
+        private final String name;
+        private final int priority;
+        // copy-on-write so that ticking never locks or allocates
+        private volatile Registration[] loops = new Registration[0];
+        private Thread thread;
+
+        Worker(String name, int priority) {
+            this.name = name;
+            this.priority = priority;
+        }
+
+        int size() {
+            return loops.length;
+        }
+
+        boolean hasPeriod(long period) {
+            for (Registration r : loops) {
+                if (r.period == period) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void add(Registration registration) {
+            synchronized (lock) {
+                Registration[] old = loops;
+                Registration[] n = new Registration[old.length + 1];
+                // keep ordered by period (then registration order) so that
+                // loops sharing a period always run back to back
+                int i = 0;
+                while (i < old.length && old[i].period <= registration.period) {
+                    n[i] = old[i];
+                    i++;
+                }
+                n[i] = registration;
+                System.arraycopy(old, i, n, i + 1, old.length - i);
+
+                registration.worker = this;
+                registration.deadline = alignedDeadline(System.nanoTime(), registration.period);
+                loops = n;
+
+                if (thread == null) {
+                    thread = new Thread(this, name);
+                    thread.setPriority(priority);
+                    thread.setDaemon(true);
+                    thread.start();
+                }
+                lock.notifyAll();
+            }
+        }
+
+        void remove(Registration registration) {
+            synchronized (lock) {
+                Registration[] old = loops;
+                int index = -1;
+                for (int x = 0; x < old.length; x++) {
+                    if (old[x] == registration) {
+                        index = x;
+                        break;
+                    }
+                }
+                if (index < 0) {
+                    return;
+                }
+                Registration[] n = new Registration[old.length - 1];
+                System.arraycopy(old, 0, n, 0, index);
+                System.arraycopy(old, index + 1, n, index, old.length - index - 1);
+                registration.worker = null;
+                loops = n;
+                lock.notifyAll();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Registration[] current = loops;
+                long next = Long.MAX_VALUE;
+                long nextPrecise = Long.MAX_VALUE;
+                long now = System.nanoTime();
+
+                for (Registration r : current) {
+                    if (r.worker != this) {
+                        // unregistered since the snapshot was taken
+                        continue;
+                    }
+                    if (now - r.deadline >= 0) {
+                        try {
+                            r.loop.run();
+                        } catch (Throwable t) {
+                            Logger.getLogger(r.loop).error("Control loop threw an exception", t);
+                        }
+                        now = System.nanoTime();
+                        if (r.loopType == Controller.LoopType.FIXED_DELAY) {
+                            r.deadline = now + r.period;
+                        } else {
+                            // absolute deadlines, so error never accumulates
+                            r.deadline += r.period;
+                            if (now - r.deadline >= 0) {
+                                // skip ticks that were missed instead of bursting
+                                r.deadline = alignedDeadline(now, r.period);
+                            }
+                        }
+                    }
+                    if (next == Long.MAX_VALUE || r.deadline - next < 0) {
+                        next = r.deadline;
+                    }
+                    if (r.loopType == Controller.LoopType.PRECISE_RATE
+                            && (nextPrecise == Long.MAX_VALUE || r.deadline - nextPrecise < 0)) {
+                        nextPrecise = r.deadline;
+                    }
+                }
+
+                if (nextPrecise == Long.MAX_VALUE) {
+                    waitCoarsely(current, next);
+                } else {
+                    waitPrecisely(current, next, nextPrecise);
+                }
+            }
+        }
+
+        // waits with Object.wait, which has millisecond resolution
+        private void waitCoarsely(Registration[] current, long deadline) {
+            synchronized (lock) {
+                if (current != loops) {
+                    // registrations changed while ticking, recompute
+                    return;
+                }
+                try {
+                    if (deadline == Long.MAX_VALUE) {
+                        lock.wait();
+                    } else {
+                        long wait = deadline - System.nanoTime();
+                        if (wait > 0) {
+                            lock.wait(wait / 1000000, (int) (wait % 1000000));
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    Logger.getLogger(ControlLoopScheduler.class).error("Control loop thread interrupted", ex);
+                }
+            }
+        }
+
+        // sleeps for most of the wait, then parks and finally spins so that
+        // the precise deadline is hit within microseconds (deadline is never
+        // later than preciseDeadline)
+        private void waitPrecisely(Registration[] current, long deadline, long preciseDeadline) {
+            long spin = spinThreshold;
+            long coarseEnd = preciseDeadline - spin - COARSE_MARGIN;
+            if (coarseEnd - System.nanoTime() > 0) {
+                waitCoarsely(current, deadline - coarseEnd < 0 ? deadline : coarseEnd);
+                return;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining > spin) {
+                LockSupport.parkNanos(remaining - spin);
+            }
+            while (System.nanoTime() - deadline < 0) {
+                if (current != loops) {
+                    return;
+                }
+            }
+        }
+    }
+}
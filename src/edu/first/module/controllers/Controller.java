@@ -1,8 +1,7 @@
 package edu.first.module.controllers;
 
-import java.util.Timer;
-import java.util.TimerTask;
 import edu.first.module.Module;
+import edu.first.util.log.Logger;
 
 /**
  * The general module for virtual controllers. Runs the {@link #run()} method in
@@ -11,11 +10,29 @@ import edu.first.module.Module;
  * <p>
  * The two options for execution are {@link LoopType#FIXED_DELAY} and
  * {@link LoopType#FIXED_RATE}. A fixed-rate execution tries to ensure your
- * {@code run()} method is called at the rate given at all times. It will
- * dynamically adjust to try and run the method at the specified rate. See
- * {@link Timer#scheduleAtFixedRate(java.util.TimerTask, long, long)} for more
- * info. A fixed-delay execution waits the specified time after every execution
- * of {@code run()}. There is no compensation when threads get slow.
+ * {@code run()} method is called at the rate given at all times. Deadlines are
+ * fixed multiples of the loop time, so a slow execution does not delay the ones
+ * after it (ticks that are missed entirely are skipped). A fixed-delay
+ * execution waits the specified time after every execution of {@code run()}.
+ * There is no compensation when threads get slow. Both of those round the loop
+ * time to whole milliseconds.
+ *
+ * <p>
+ * {@link LoopType#PRECISE_RATE} behaves like a fixed-rate execution, but keeps
+ * the loop time in nanoseconds and waits for each deadline precisely (see
+ * {@link ControlLoopScheduler}). Use it for fast loops whose rate does not
+ * divide evenly into milliseconds, like 300Hz.
+ *
+ * <p>
+ * Controllers do not own a thread. They are run by a
+ * {@link ControlLoopScheduler}, which is the
+ * {@link ControlLoopScheduler#getDefault() shared scheduler} unless changed
+ * with {@link #setScheduler(ControlLoopScheduler)}.
+ *
+ * <p>
+ * The timing of every execution is recorded in the controller's
+ * {@link #getStatistics() statistics}, which can also be
+ * {@link #setStatisticsLogging(double) logged periodically}.
  *
  * @since May 30 2013
  * @author Joel Gallant
@@ -23,9 +40,21 @@ import edu.first.module.Module;
 public abstract class Controller extends Module.StandardModule implements
         Runnable {
 
-    private final int loopTime;
+    private final long loopTime;
     private final LoopType loopType;
-    private Timer loopController;
+    // uses lock so user can't lock controller accidentally using "this"
+    private final Object schedulerLock = new Object();
+    private ControlLoopScheduler scheduler = ControlLoopScheduler.getDefault();
+    private ControlLoopScheduler.Registration registration;
+    private final LoopStatistics statistics;
+    private final Runnable loop = new Runnable() {
+        @Override
+        public void run() {
+            tick();
+        }
+    };
+    private volatile long statisticsLogPeriod;
+    private long nextStatisticsLog;
 
     /**
      * Constructs the controller with the loop time and the type of loop to run.
@@ -35,8 +64,14 @@ public abstract class Controller extends Module.StandardModule implements
      * @param loopType kind of execution of the loop
      */
     public Controller(double loopTime, LoopType loopType) {
-        this.loopTime = (int) Math.round(loopTime * 1000.0);
+        if (loopType == LoopType.PRECISE_RATE) {
+            this.loopTime = Math.round(loopTime * 1e9);
+        } else {
+            // whole milliseconds, which is all that the other types guarantee
+            this.loopTime = Math.round(loopTime * 1000.0) * 1000000L;
+        }
         this.loopType = loopType;
+        this.statistics = new LoopStatistics(this.loopTime);
     }
 
     /**
@@ -51,16 +86,64 @@ public abstract class Controller extends Module.StandardModule implements
         this(1.0 / (double) loopTimeHertz, loopType);
     }
 
+    /**
+     * Sets the scheduler that runs this controller's loop. If the controller is
+     * currently enabled, it is moved to the new scheduler right away.
+     *
+     * @throws NullPointerException when scheduler is null
+     * @param scheduler scheduler to run the loop on
+     */
+    public final void setScheduler(ControlLoopScheduler scheduler) {
+        if (scheduler == null) {
+            throw new NullPointerException("Null scheduler given");
+        }
+        synchronized (schedulerLock) {
+            if (registration != null) {
+                this.scheduler.unregister(registration);
+                registration = scheduler.register(loop, loopTime, loopType);
+            }
+            this.scheduler = scheduler;
+        }
+    }
+
+    /**
+     * Returns the time in seconds between executions that the controller is
+     * trying to run at, after rounding to the precision of its loop type.
+     *
+     * @return loop time in seconds
+     */
+    public final double getLoopTime() {
+        return loopTime / 1e9;
+    }
+
+    /**
+     * Returns the timing statistics of this controller's loop. The returned
+     * object is live, and always reflects the most recent executions.
+     *
+     * @return statistics of the loop
+     */
+    public final LoopStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Sets how often the {@link #getStatistics() loop statistics} are sent to
+     * the {@link Logger} as an info message. A period of zero or less turns
+     * off logging, which is the default.
+     *
+     * @param period time in seconds between each log message
+     */
+    public final void setStatisticsLogging(double period) {
+        statisticsLogPeriod = period > 0 ? (long) (period * 1e9) : 0;
+    }
+
     /**
      * Starts the loop of the controller.
      */
     @Override
     protected void enableModule() {
-        if (loopType.equals(LoopType.FIXED_DELAY)) {
-            (loopController = new Timer()).schedule(task(), 0, loopTime);
-        } else if (loopType.equals(LoopType.FIXED_RATE)) {
-            (loopController = new Timer()).scheduleAtFixedRate(task(), 0,
-                    loopTime);
+        synchronized (schedulerLock) {
+            registration = scheduler.register(loop, loopTime, loopType);
         }
     }
 
@@ -70,8 +153,11 @@ public abstract class Controller extends Module.StandardModule implements
      */
     @Override
     protected void disableModule() {
-        if (loopController != null) {
-            loopController.cancel();
+        synchronized (schedulerLock) {
+            if (registration != null) {
+                scheduler.unregister(registration);
+                registration = null;
+            }
         }
     }
 
@@ -82,13 +168,29 @@ public abstract class Controller extends Module.StandardModule implements
     public void init() {
     }
 
-    private TimerTask task() {
-        return new TimerTask() {
-            @Override
-            public void run() {
-                Controller.this.run();
+    /**
+     * Restarts any state that depends on the time between executions. This is
+     * called when the controller is run as part of another controller's loop
+     * (instead of being enabled itself) and that controller is enabled.
+     */
+    void restart() {
+    }
+
+    private void tick() {
+        long start = System.nanoTime();
+        run();
+        long end = System.nanoTime();
+        statistics.record(start, end);
+
+        long logPeriod = statisticsLogPeriod;
+        if (logPeriod > 0) {
+            if (nextStatisticsLog == 0) {
+                nextStatisticsLog = end + logPeriod;
+            } else if (end - nextStatisticsLog >= 0) {
+                nextStatisticsLog = end + logPeriod;
+                Logger.getLogger(this).info(statistics.toString());
             }
-        };
+        }
     }
 
     /**
@@ -97,6 +199,6 @@ public abstract class Controller extends Module.StandardModule implements
      */
     public static enum LoopType {
 
-        FIXED_DELAY, FIXED_RATE;
+        FIXED_DELAY, FIXED_RATE, PRECISE_RATE;
     }
 }
@@ -0,0 +1,178 @@
+package edu.first.module.controllers;
+
+/**
+ * A table of PID gains that change depending on where a mechanism is, like an
+ * elevator that needs more output near the top of its travel. Each breakpoint
+ * has its own P, I, D and F (feedforward) values, and values between
+ * breakpoints are linearly interpolated. Values outside of the table use the
+ * nearest breakpoint.
+ *
+ * <p>
+ * Schedules are immutable, and looking up gains never allocates, so they are
+ * used directly inside of the control loop. See
+ * {@link PIDController#setGainSchedule(GainSchedule, GainSchedule.Variable)}.
+ *
+ * @since October 18 26
+ * @author Joel Gallant
+ */
+public final class GainSchedule {
+
+    private final double[] breakpoints;
+    private final double[] P, I, D, F;
+
+    /**
+     * Constructs the schedule using the breakpoints and the gains at each
+     * breakpoint. All arrays are copied.
+     *
+     * @throws NullPointerException when any array is null
+     * @throws IllegalArgumentException when arrays are empty or different
+     * lengths, or breakpoints are not strictly increasing
+     * @param breakpoints values of the scheduling variable, in increasing order
+     * @param P proportional coefficient at each breakpoint
+     * @param I integral coefficient at each breakpoint
+     * @param D derivative coefficient at each breakpoint
+     * @param F output added at each breakpoint (feedforward)
+     */
+    public GainSchedule(double[] breakpoints, double[] P, double[] I, double[] D, double[] F) {
+        if (breakpoints == null || P == null || I == null || D == null || F == null) {
+            throw new NullPointerException("Null array given");
+        }
+        int length = breakpoints.length;
+        if (length == 0) {
+            throw new IllegalArgumentException("No breakpoints given");
+        } else if (P.length != length || I.length != length || D.length != length || F.length != length) {
+            throw new IllegalArgumentException("Gains do not match " + length + " breakpoints");
+        }
+        for (int x = 1; x < length; x++) {
+            if (!(breakpoints[x] > breakpoints[x - 1])) {
+                throw new IllegalArgumentException("Breakpoints are not increasing at " + x);
+            }
+        }
+        this.breakpoints = breakpoints.clone();
+        this.P = P.clone();
+        this.I = I.clone();
+        this.D = D.clone();
+        this.F = F.clone();
+    }
+
+    /**
+     * Returns how many breakpoints are in the schedule.
+     *
+     * @return amount of breakpoints
+     */
+    public int size() {
+        return breakpoints.length;
+    }
+
+    /**
+     * Returns the interpolated proportional coefficient.
+     *
+     * @param x value of the scheduling variable
+     * @return P at that value
+     */
+    public double getP(double x) {
+        int i = lowerIndex(x);
+        return interpolate(P, i, weight(i, x));
+    }
+
+    /**
+     * Returns the interpolated integral coefficient.
+     *
+     * @param x value of the scheduling variable
+     * @return I at that value
+     */
+    public double getI(double x) {
+        int i = lowerIndex(x);
+        return interpolate(I, i, weight(i, x));
+    }
+
+    /**
+     * Returns the interpolated derivative coefficient.
+     *
+     * @param x value of the scheduling variable
+     * @return D at that value
+     */
+    public double getD(double x) {
+        int i = lowerIndex(x);
+        return interpolate(D, i, weight(i, x));
+    }
+
+    /**
+     * Returns the interpolated feedforward.
+     *
+     * @param x value of the scheduling variable
+     * @return F at that value
+     */
+    public double getF(double x) {
+        int i = lowerIndex(x);
+        return interpolate(F, i, weight(i, x));
+    }
+
+    // index of the last breakpoint that is <= x (or 0), by binary search
+    int lowerIndex(double x) {
+        int low = 0;
+        int high = breakpoints.length - 1;
+        if (!(x > breakpoints[0])) {
+            return 0;
+        } else if (x >= breakpoints[high]) {
+            return high;
+        }
+        while (high - low > 1) {
+            int middle = (low + high) >>> 1;
+            if (breakpoints[middle] <= x) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // how far x is between breakpoint i and i + 1, from 0 to 1
+    double weight(int i, double x) {
+        if (i >= breakpoints.length - 1) {
+            return 0;
+        }
+        double w = (x - breakpoints[i]) / (breakpoints[i + 1] - breakpoints[i]);
+        return w < 0 ? 0 : (w > 1 ? 1 : w);
+    }
+
+    double P(int i, double weight) {
+        return interpolate(P, i, weight);
+    }
+
+    double I(int i, double weight) {
+        return interpolate(I, i, weight);
+    }
+
+    double D(int i, double weight) {
+        return interpolate(D, i, weight);
+    }
+
+    double F(int i, double weight) {
+        return interpolate(F, i, weight);
+    }
+
+    private static double interpolate(double[] values, int i, double weight) {
+        if (weight == 0) {
+            return values[i];
+        }
+        return values[i] + (values[i + 1] - values[i]) * weight;
+    }
+
+    /**
+     * Enum representing what value a {@link PIDController} looks up its gains
+     * with.
+     */
+    public static enum Variable {
+
+        /**
+         * The input of the controller (where the mechanism is).
+         */
+        INPUT,
+        /**
+         * The setpoint of the controller (where the mechanism is going).
+         */
+        SETPOINT;
+    }
+}
@@ -0,0 +1,279 @@
+package edu.first.module.controllers;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Timing statistics of a {@link Controller Controller's} loop. Recording a tick
+ * never allocates, so statistics are always collected.
+ *
+ * <p>
+ * Jitter is the difference between the actual time between two ticks and the
+ * loop time that the controller was given. A tick is "missed" when the time
+ * between two ticks was long enough that a whole tick should have happened in
+ * between, and an "overrun" is when a single execution took longer than the
+ * loop time.
+ *
+ * <p>
+ * All times are in seconds. This class is thread safe. Only the loop writes
+ * to the statistics, so recording a tick never locks. Every value is published
+ * on its own, so values that are read while a tick is being recorded can be
+ * one tick apart from each other.
+ *
+ * @since October 18 26
+ * @author Joel Gallant
+ */
+public final class LoopStatistics {
+
+    // jitter histogram for percentiles, last bucket catches everything larger
+    private static final long BUCKET_NANOS = 50000;
+    private static final int BUCKETS = 400;
+    private final long nominalPeriod;
+    private final AtomicIntegerArray histogram = new AtomicIntegerArray(BUCKETS);
+    // everything below is only written by the loop's thread
+    private volatile long ticks;
+    private volatile long lastStart;
+    private volatile long lastPeriod;
+    private volatile long totalPeriod;
+    private volatile long lastExecution;
+    private volatile long maxExecution;
+    private volatile long totalExecution;
+    private volatile long maxJitter;
+    private volatile long missed;
+    private volatile long overruns;
+    // set by reset(), applied by the loop's thread
+    private volatile boolean reset;
+
+    LoopStatistics(long nominalPeriodNanos) {
+        this.nominalPeriod = nominalPeriodNanos;
+    }
+
+    /**
+     * Records a single execution of the loop. Only called by the thread that
+     * is running the loop.
+     *
+     * @param start {@link System#nanoTime()} when execution started
+     * @param end {@link System#nanoTime()} when execution finished
+     */
+    void record(long start, long end) {
+        if (reset) {
+            clear();
+        }
+        long execution = end - start;
+        lastExecution = execution;
+        totalExecution += execution;
+        if (execution > maxExecution) {
+            maxExecution = execution;
+        }
+        if (execution > nominalPeriod) {
+            overruns++;
+        }
+
+        if (ticks > 0) {
+            long period = start - lastStart;
+            lastPeriod = period;
+            totalPeriod += period;
+
+            long jitter = Math.abs(period - nominalPeriod);
+            if (jitter > maxJitter) {
+                maxJitter = jitter;
+            }
+            int bucket = (int) Math.min(jitter / BUCKET_NANOS, BUCKETS - 1);
+            histogram.lazySet(bucket, histogram.get(bucket) + 1);
+
+            // rounded so that regular jitter isn't counted as a miss
+            long elapsedTicks = (period + nominalPeriod / 2) / nominalPeriod;
+            if (elapsedTicks > 1) {
+                missed += elapsedTicks - 1;
+            }
+        }
+        lastStart = start;
+        ticks++;
+    }
+
+    private void clear() {
+        reset = false;
+        for (int x = 0; x < BUCKETS; x++) {
+            histogram.lazySet(x, 0);
+        }
+        ticks = 0;
+        lastStart = 0;
+        lastPeriod = 0;
+        totalPeriod = 0;
+        lastExecution = 0;
+        maxExecution = 0;
+        totalExecution = 0;
+        maxJitter = 0;
+        missed = 0;
+        overruns = 0;
+    }
+
+    /**
+     * Clears all statistics, as if the loop had never run. Since only the loop
+     * writes to the statistics, they are cleared when the next tick is
+     * recorded.
+     */
+    public void reset() {
+        reset = true;
+    }
+
+    /**
+     * Returns the loop time that the controller is trying to run at.
+     *
+     * @return desired time between ticks
+     */
+    public double getNominalPeriod() {
+        return seconds(nominalPeriod);
+    }
+
+    /**
+     * Returns how many times the loop has been run.
+     *
+     * @return amount of recorded ticks
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Returns the time between the start of the last two ticks.
+     *
+     * @return most recent actual period
+     */
+    public double getLastPeriod() {
+        return seconds(lastPeriod);
+    }
+
+    /**
+     * Returns the average time between the start of two ticks.
+     *
+     * @return average actual period
+     */
+    public double getAveragePeriod() {
+        long t = ticks;
+        return t > 1 ? seconds(totalPeriod) / (t - 1) : 0;
+    }
+
+    /**
+     * Returns how long the last execution of the loop took.
+     *
+     * @return most recent execution time
+     */
+    public double getLastExecutionTime() {
+        return seconds(lastExecution);
+    }
+
+    /**
+     * Returns the average time an execution of the loop takes.
+     *
+     * @return average execution time
+     */
+    public double getAverageExecutionTime() {
+        long t = ticks;
+        return t > 0 ? seconds(totalExecution) / t : 0;
+    }
+
+    /**
+     * Returns the longest time an execution of the loop has taken.
+     *
+     * @return worst-case execution time
+     */
+    public double getMaxExecutionTime() {
+        return seconds(maxExecution);
+    }
+
+    /**
+     * Returns the largest difference between an actual period and the loop
+     * time.
+     *
+     * @return worst-case jitter
+     */
+    public double getMaxJitter() {
+        return seconds(maxJitter);
+    }
+
+    /**
+     * Returns the jitter that 99% of periods were under. The result has a
+     * resolution of 50 microseconds, and is capped at 20 milliseconds (see
+     * {@link #getMaxJitter()} for larger values).
+     *
+     * @return 99th percentile jitter
+     */
+    public double getJitterP99() {
+        return getJitterPercentile(0.99);
+    }
+
+    /**
+     * Returns the jitter that the given fraction of periods were under. The
+     * result has a resolution of 50 microseconds, and is capped at 20
+     * milliseconds.
+     *
+     * @throws IllegalArgumentException when percentile is not between 0 and 1
+     * @param percentile fraction of periods (ex. 0.99)
+     * @return jitter at the percentile
+     */
+    public double getJitterPercentile(double percentile) {
+        if (percentile < 0 || percentile > 1) {
+            throw new IllegalArgumentException(percentile + " is not between 0 and 1");
+        }
+        long samples = ticks - 1;
+        if (samples <= 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(samples * percentile);
+        long count = 0;
+        for (int x = 0; x < BUCKETS; x++) {
+            count += histogram.get(x);
+            if (count >= target) {
+                return seconds((x + 1) * BUCKET_NANOS);
+            }
+        }
+        return seconds(BUCKETS * BUCKET_NANOS);
+    }
+
+    /**
+     * Returns how many ticks were skipped entirely because the loop was late.
+     *
+     * @return amount of missed ticks
+     */
+    public long getMissedTicks() {
+        return missed;
+    }
+
+    /**
+     * Returns how many executions took longer than the loop time.
+     *
+     * @return amount of overrun ticks
+     */
+    public long getOverruns() {
+        return overruns;
+    }
+
+    /**
+     * Returns a one line summary of the statistics, with times in
+     * milliseconds.
+     *
+     * @return summary of statistics
+     */
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append("ticks=").append(ticks);
+        buffer.append(" period(ms)=").append(millis(getAveragePeriod()))
+                .append('/').append(millis(getNominalPeriod()));
+        buffer.append(" exec(ms)=").append(millis(getAverageExecutionTime()))
+                .append(" max ").append(millis(getMaxExecutionTime()));
+        buffer.append(" jitter(ms)=p99 ").append(millis(getJitterP99()))
+                .append(" max ").append(millis(getMaxJitter()));
+        buffer.append(" missed=").append(missed);
+        buffer.append(" overruns=").append(overruns);
+        return buffer.toString();
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    private static double millis(double seconds) {
+        return Math.round(seconds * 1e5) / 100.0;
+    }
+}
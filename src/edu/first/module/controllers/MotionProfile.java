@@ -0,0 +1,255 @@
+package edu.first.module.controllers;
+
+/**
+ * A precomputed, time-parameterized path from one position to another. The
+ * position, velocity and acceleration are sampled at a fixed interval and
+ * stored in arrays when the profile is created, so following a profile costs
+ * the same on every tick no matter how long it is.
+ *
+ * <p>
+ * Two shapes are available:
+ * <ul>
+ * <li> {@link #trapezoidal(double, double, double, double, double) Trapezoidal}
+ * - accelerates at the maximum acceleration, cruises at the maximum velocity
+ * and decelerates. Acceleration changes instantly.
+ * <li> {@link #sCurve(double, double, double, double, double, double) S-curve}
+ * - the same, but acceleration is ramped at a limited jerk, which is gentler on
+ * mechanisms. Ramping makes the profile take longer than the trapezoidal one
+ * with the same limits (see the method).
+ * </ul>
+ *
+ * Profiles are immutable and thread safe. Use them with a
+ * {@link ProfiledPIDController}.
+ *
+ * @since October 18 26
+ * @author Joel Gallant
+ */
+public final class MotionProfile {
+
+    private final double sampleTime;
+    private final double[] position;
+    private final double[] velocity;
+    private final double[] acceleration;
+
+    private MotionProfile(double sampleTime, double[] position, double[] velocity, double[] acceleration) {
+        this.sampleTime = sampleTime;
+        this.position = position;
+        this.velocity = velocity;
+        this.acceleration = acceleration;
+    }
+
+    /**
+     * Creates a trapezoidal profile. If the distance is too short to reach the
+     * maximum velocity, the profile is triangular.
+     *
+     * @throws IllegalArgumentException when a maximum or the sample time is not
+     * positive
+     * @param start position to start at
+     * @param end position to finish at
+     * @param maxVelocity highest velocity (per second)
+     * @param maxAcceleration highest acceleration (per second squared)
+     * @param sampleTime time in seconds between samples, usually the loop time
+     * @return the profile
+     */
+    public static MotionProfile trapezoidal(double start, double end,
+            double maxVelocity, double maxAcceleration, double sampleTime) {
+        checkPositive(maxVelocity, "velocity");
+        checkPositive(maxAcceleration, "acceleration");
+        checkPositive(sampleTime, "sample time");
+
+        double distance = Math.abs(end - start);
+        double direction = end < start ? -1 : 1;
+        double accelTime = maxVelocity / maxAcceleration;
+        double peakVelocity = maxVelocity;
+        if (distance < maxVelocity * accelTime) {
+            // never reaches max velocity
+            peakVelocity = Math.sqrt(distance * maxAcceleration);
+            accelTime = peakVelocity / maxAcceleration;
+        }
+        double accelDistance = 0.5 * maxAcceleration * accelTime * accelTime;
+        double cruiseTime = (distance - 2 * accelDistance) / peakVelocity;
+        if (peakVelocity == 0) {
+            cruiseTime = 0;
+        }
+        double duration = 2 * accelTime + cruiseTime;
+
+        int samples = (int) Math.ceil(duration / sampleTime) + 1;
+        double[] p = new double[samples];
+        double[] v = new double[samples];
+        double[] a = new double[samples];
+
+        for (int x = 0; x < samples; x++) {
+            double t = Math.min(x * sampleTime, duration);
+            double d, vel, acc;
+            if (t < accelTime) {
+                acc = maxAcceleration;
+                vel = maxAcceleration * t;
+                d = 0.5 * maxAcceleration * t * t;
+            } else if (t < accelTime + cruiseTime) {
+                acc = 0;
+                vel = peakVelocity;
+                d = accelDistance + peakVelocity * (t - accelTime);
+            } else if (t < duration) {
+                double left = duration - t;
+                acc = -maxAcceleration;
+                vel = maxAcceleration * left;
+                d = distance - 0.5 * maxAcceleration * left * left;
+            } else {
+                acc = 0;
+                vel = 0;
+                d = distance;
+            }
+            p[x] = start + direction * d;
+            v[x] = direction * vel;
+            a[x] = direction * acc;
+        }
+        p[samples - 1] = end;
+        return new MotionProfile(sampleTime, p, v, a);
+    }
+
+    /**
+     * Creates an S-curve profile. This is a trapezoidal profile whose
+     * acceleration changes at no more than {@code maxJerk}. The trapezoid is
+     * smoothed with a moving average that is {@code maxAcceleration / maxJerk}
+     * seconds long (rounded to whole samples), so the profile's
+     * {@link #getDuration() duration} is the trapezoidal duration plus that
+     * time, not the trapezoidal duration.
+     *
+     * @throws IllegalArgumentException when a maximum or the sample time is not
+     * positive
+     * @param start position to start at
+     * @param end position to finish at
+     * @param maxVelocity highest velocity (per second)
+     * @param maxAcceleration highest acceleration (per second squared)
+     * @param maxJerk highest rate of change of acceleration (per second cubed)
+     * @param sampleTime time in seconds between samples, usually the loop time
+     * @return the profile
+     */
+    public static MotionProfile sCurve(double start, double end,
+            double maxVelocity, double maxAcceleration, double maxJerk, double sampleTime) {
+        checkPositive(maxJerk, "jerk");
+        MotionProfile trapezoid = trapezoidal(start, end, maxVelocity, maxAcceleration, sampleTime);
+
+        // A moving average over the time it takes to ramp up to full
+        // acceleration limits the jerk. Averaging is linear, so filtering
+        // position, velocity and acceleration separately keeps them consistent.
+        int window = Math.max(1, (int) Math.round(maxAcceleration / maxJerk / sampleTime));
+        return new MotionProfile(sampleTime,
+                movingAverage(trapezoid.position, window),
+                movingAverage(trapezoid.velocity, window),
+                movingAverage(trapezoid.acceleration, window));
+    }
+
+    // holds the first value before the array and the last value after it
+    private static double[] movingAverage(double[] values, int window) {
+        int length = values.length + window - 1;
+        double[] result = new double[length];
+        double sum = values[0] * window;
+        for (int x = 0; x < length; x++) {
+            sum += values[Math.min(x, values.length - 1)];
+            sum -= x - window < 0 ? values[0] : values[Math.min(x - window, values.length - 1)];
+            result[x] = sum / window;
+        }
+        result[length - 1] = values[values.length - 1];
+        return result;
+    }
+
+    private static void checkPositive(double value, String name) {
+        if (!(value > 0)) {
+            throw new IllegalArgumentException(value + " is not a valid " + name);
+        }
+    }
+
+    /**
+     * Returns the time in seconds between samples.
+     *
+     * @return sample time
+     */
+    public double getSampleTime() {
+        return sampleTime;
+    }
+
+    /**
+     * Returns how many samples are in the profile.
+     *
+     * @return amount of samples
+     */
+    public int size() {
+        return position.length;
+    }
+
+    /**
+     * Returns how long the profile takes to finish, in seconds.
+     *
+     * @return duration of the profile
+     */
+    public double getDuration() {
+        return (position.length - 1) * sampleTime;
+    }
+
+    /**
+     * Returns the index of the sample at a time since the start of the profile.
+     * Times before the start give the first sample, and times after the end
+     * give the last.
+     *
+     * @param time seconds since the start of the profile
+     * @return index of the sample
+     */
+    public int indexAt(double time) {
+        if (!(time > 0)) {
+            return 0;
+        }
+        return (int) Math.min(Math.round(time / sampleTime), position.length - 1);
+    }
+
+    /**
+     * Returns the position at a sample.
+     *
+     * @throws ArrayIndexOutOfBoundsException when index is not a sample
+     * @param index index of the sample
+     * @return position at that sample
+     */
+    public double getPosition(int index) {
+        return position[index];
+    }
+
+    /**
+     * Returns the velocity at a sample.
+     *
+     * @throws ArrayIndexOutOfBoundsException when index is not a sample
+     * @param index index of the sample
+     * @return velocity at that sample (per second)
+     */
+    public double getVelocity(int index) {
+        return velocity[index];
+    }
+
+    /**
+     * Returns the acceleration at a sample.
+     *
+     * @throws ArrayIndexOutOfBoundsException when index is not a sample
+     * @param index index of the sample
+     * @return acceleration at that sample (per second squared)
+     */
+    public double getAcceleration(int index) {
+        return acceleration[index];
+    }
+
+    /**
+     * Returns the position the profile starts at.
+     *
+     * @return first position
+     */
+    public double getStart() {
+        return position[0];
+    }
+
+    /**
+     * Returns the position the profile finishes at.
+     *
+     * @return last position
+     */
+    public double getEnd() {
+        return position[position.length - 1];
+    }
+}
@@ -0,0 +1,457 @@
+package edu.first.module.controllers;
+
+import edu.first.identifiers.Input;
+import edu.first.identifiers.Output;
+import edu.first.identifiers.PositionalActuator;
+import edu.first.identifiers.PositionalSensor;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A group of identical PID loops that are all run in the same tick. This is
+ * meant for things like swerve modules or multi-joint arms, where many
+ * {@link PIDController PIDControllers} would each need their own object graph.
+ * Every loop runs the same algorithm as a default {@link PIDController}:
+ * <pre>   P * error
+ * + I * totalError
+ * + D * (error - prevError)
+ * </pre>
+ *
+ * <p>
+ * The state of every loop is stored in parallel arrays, and all loops are
+ * updated in one pass without allocation. Each loop can still be used on its
+ * own through {@link #getLoop(int)}, which is a {@link PositionalSensor} of its
+ * output and a {@link PositionalActuator} of its setpoint.
+ *
+ * <p>
+ * This class is thread safe. Settings are written to a separate set of arrays
+ * and only copied into the loop's arrays on the next tick after they change, so
+ * the loop does not lock unless settings have changed.
+ *
+ * @since October 18 26
+ * @author Joel Gallant
+ */
+public class PIDBank extends Controller {
+
+    private static final double defaultLoopTime = 0.02;
+    // Layout of pending settings, each setting has a block of size() values
+    private static final int P_SETTING = 0, I_SETTING = 1, D_SETTING = 2,
+            SETPOINT_SETTING = 3, MIN_OUTPUT_SETTING = 4, MAX_OUTPUT_SETTING = 5;
+    private static final int SETTINGS = 6;
+    private final Input[] inputs;
+    private final Output[] outputs;
+    private final Loop[] loops;
+    // Settings written by other threads, guarded by lock
+    // uses lock so user can't lock controller accidentally using "this"
+    private final Object lock = new Object();
+    private final double[] pending;
+    private volatile int version;
+    // Loop thread only, copied from pending when version changes
+    private int seenVersion = -1;
+    private final double[] P, I, D, setpoint, minimumOutput, maximumOutput;
+    private final double[] totalError, prevError;
+    // Only read outside of the loop, guarded by lock
+    private final double[] tolerance;
+    // Results, readable from any thread
+    private final AtomicLongArray results, errors;
+
+    /**
+     * Constructs the bank using the inputs and outputs of each loop. The loop at
+     * index {@code i} uses {@code inputs[i]} and {@code outputs[i]}. Uses the
+     * default loop time.
+     *
+     * @throws NullPointerException when either array or any element is null
+     * @throws IllegalArgumentException when arrays are different lengths
+     * @param inputs objects to receive input from
+     * @param outputs objects to send output to
+     */
+    public PIDBank(Input[] inputs, Output[] outputs) {
+        this(inputs, outputs, defaultLoopTime);
+    }
+
+    /**
+     * Constructs the bank using the inputs and outputs of each loop. The loop at
+     * index {@code i} uses {@code inputs[i]} and {@code outputs[i]}.
+     *
+     * @throws NullPointerException when either array or any element is null
+     * @throws IllegalArgumentException when arrays are different lengths
+     * @param inputs objects to receive input from
+     * @param outputs objects to send output to
+     * @param loopTime time in seconds each loop should run
+     */
+    public PIDBank(Input[] inputs, Output[] outputs, double loopTime) {
+        this(inputs, outputs, loopTime, LoopType.FIXED_RATE);
+    }
+
+    /**
+     * Constructs the bank using the inputs and outputs of each loop, looping
+     * at {@code loopTime} using the given type of loop (like
+     * {@link LoopType#PRECISE_RATE} for fast loops). The loop at index
+     * {@code i} uses {@code inputs[i]} and {@code outputs[i]}.
+     *
+     * @throws NullPointerException when either array or any element is null
+     * @throws IllegalArgumentException when arrays are different lengths
+     * @param inputs objects to receive input from
+     * @param outputs objects to send output to
+     * @param loopTime time in seconds each loop should run
+     * @param loopType how the loop is timed
+     */
+    public PIDBank(Input[] inputs, Output[] outputs, double loopTime, LoopType loopType) {
+        super(loopTime, loopType);
+        checkArrays(inputs, outputs);
+        int size = inputs.length;
+        this.inputs = inputs.clone();
+        this.outputs = outputs.clone();
+        this.pending = new double[size * SETTINGS];
+        this.P = new double[size];
+        this.I = new double[size];
+        this.D = new double[size];
+        this.setpoint = new double[size];
+        this.minimumOutput = new double[size];
+        this.maximumOutput = new double[size];
+        this.totalError = new double[size];
+        this.prevError = new double[size];
+        this.tolerance = new double[size];
+        this.results = new AtomicLongArray(size);
+        this.errors = new AtomicLongArray(size);
+        this.loops = new Loop[size];
+        for (int x = 0; x < size; x++) {
+            pending[MIN_OUTPUT_SETTING * size + x] = -1;
+            pending[MAX_OUTPUT_SETTING * size + x] = +1;
+            loops[x] = new Loop(x);
+        }
+    }
+
+    /**
+     * Constructs the bank using the inputs and outputs of each loop. The loop at
+     * index {@code i} uses {@code inputs[i]} and {@code outputs[i]}.
+     *
+     * @throws NullPointerException when either array or any element is null
+     * @throws IllegalArgumentException when arrays are different lengths
+     * @param inputs objects to receive input from
+     * @param outputs objects to send output to
+     * @param loopTimeHertz the hertz value that represents how fast execution
+     * will happen
+     */
+    public PIDBank(Input[] inputs, Output[] outputs, int loopTimeHertz) {
+        this(inputs, outputs, 1.0 / (double) loopTimeHertz);
+    }
+
+    /**
+     * Constructs the bank using the inputs and outputs of each loop, looping
+     * at {@code loopTimeHertz} using the given type of loop. The loop at index
+     * {@code i} uses {@code inputs[i]} and {@code outputs[i]}.
+     *
+     * @throws NullPointerException when either array or any element is null
+     * @throws IllegalArgumentException when arrays are different lengths
+     * @param inputs objects to receive input from
+     * @param outputs objects to send output to
+     * @param loopTimeHertz the hertz value that represents how fast execution
+     * will happen
+     * @param loopType how the loop is timed
+     */
+    public PIDBank(Input[] inputs, Output[] outputs, int loopTimeHertz, LoopType loopType) {
+        this(inputs, outputs, 1.0 / (double) loopTimeHertz, loopType);
+    }
+
+    private static void checkArrays(Input[] inputs, Output[] outputs) {
+        if (inputs == null) {
+            throw new NullPointerException("Null inputs given");
+        } else if (outputs == null) {
+            throw new NullPointerException("Null outputs given");
+        } else if (inputs.length != outputs.length) {
+            throw new IllegalArgumentException(inputs.length + " inputs but " + outputs.length + " outputs");
+        }
+        for (int x = 0; x < inputs.length; x++) {
+            if (inputs[x] == null) {
+                throw new NullPointerException("Null input given at " + x);
+            } else if (outputs[x] == null) {
+                throw new NullPointerException("Null output given at " + x);
+            }
+        }
+    }
+
+    /**
+     * Returns how many loops are in the bank.
+     *
+     * @return amount of loops
+     */
+    public int size() {
+        return loops.length;
+    }
+
+    /**
+     * Returns a view of a single loop in the bank.
+     *
+     * @throws ArrayIndexOutOfBoundsException when index is not a loop
+     * @param index index of the loop
+     * @return the loop at that index
+     */
+    public Loop getLoop(int index) {
+        return loops[index];
+    }
+
+    /**
+     * Sets the Proportional, Integral and Derivative coefficients of a loop.
+     *
+     * @param index index of the loop
+     * @param P proportional coefficient
+     * @param I integral coefficient
+     * @param D derivative coefficient
+     */
+    public void setPID(int index, double P, double I, double D) {
+        synchronized (lock) {
+            set(P_SETTING, index, P);
+            set(I_SETTING, index, I);
+            set(D_SETTING, index, D);
+            version++;
+        }
+    }
+
+    /**
+     * Sets the Proportional, Integral and Derivative coefficients of every
+     * loop.
+     *
+     * @param P proportional coefficient
+     * @param I integral coefficient
+     * @param D derivative coefficient
+     */
+    public void setPID(double P, double I, double D) {
+        synchronized (lock) {
+            for (int x = 0; x < loops.length; x++) {
+                set(P_SETTING, x, P);
+                set(I_SETTING, x, I);
+                set(D_SETTING, x, D);
+            }
+            version++;
+        }
+    }
+
+    /**
+     * Sets the setpoint (or goal) of a loop.
+     *
+     * @param index index of the loop
+     * @param setpoint desired point that the input should reach
+     */
+    public void setSetpoint(int index, double setpoint) {
+        synchronized (lock) {
+            set(SETPOINT_SETTING, index, setpoint);
+            version++;
+        }
+    }
+
+    /**
+     * Sets the range of values that are acceptable for output of a loop. By
+     * default, these values are -1 and +1.
+     *
+     * @throws IllegalArgumentException when min > max
+     * @param index index of the loop
+     * @param minimumOutput lowest possible output
+     * @param maximumOutput highest possible output
+     */
+    public void setOutputRange(int index, double minimumOutput, double maximumOutput) {
+        if (minimumOutput > maximumOutput) {
+            throw new IllegalArgumentException(minimumOutput + " is larger than " + maximumOutput);
+        }
+        synchronized (lock) {
+            set(MIN_OUTPUT_SETTING, index, minimumOutput);
+            set(MAX_OUTPUT_SETTING, index, maximumOutput);
+            version++;
+        }
+    }
+
+    /**
+     * Sets the tolerance of {@link Loop#onTarget()} for a loop.
+     *
+     * @param index index of the loop
+     * @param tolerance how far off input can be to be considered "on target"
+     */
+    public void setTolerance(int index, double tolerance) {
+        synchronized (lock) {
+            this.tolerance[index] = tolerance;
+        }
+    }
+
+    private void set(int setting, int index, double value) {
+        if (index < 0 || index >= loops.length) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        pending[setting * loops.length + index] = value;
+    }
+
+    private double get(int setting, int index) {
+        synchronized (lock) {
+            return pending[setting * loops.length + index];
+        }
+    }
+
+    /**
+     * Runs the PID algorithm of every loop.
+     */
+    @Override
+    public final void run() {
+        int size = loops.length;
+        if (version != seenVersion) {
+            synchronized (lock) {
+                System.arraycopy(pending, P_SETTING * size, P, 0, size);
+                System.arraycopy(pending, I_SETTING * size, I, 0, size);
+                System.arraycopy(pending, D_SETTING * size, D, 0, size);
+                System.arraycopy(pending, SETPOINT_SETTING * size, setpoint, 0, size);
+                System.arraycopy(pending, MIN_OUTPUT_SETTING * size, minimumOutput, 0, size);
+                System.arraycopy(pending, MAX_OUTPUT_SETTING * size, maximumOutput, 0, size);
+                seenVersion = version;
+            }
+        }
+
+        for (int x = 0; x < size; x++) {
+            double error = setpoint[x] - inputs[x].get();
+            double sI = I[x];
+            double sMaxOutput = maximumOutput[x];
+            double sMinOutput = minimumOutput[x];
+
+            if (sI != 0) {
+                double potentialIGain = (totalError[x] + error) * sI;
+                if (potentialIGain < sMaxOutput) {
+                    if (potentialIGain > sMinOutput) {
+                        totalError[x] += error;
+                    } else {
+                        totalError[x] = sMinOutput / sI;
+                    }
+                } else {
+                    totalError[x] = sMaxOutput / sI;
+                }
+            }
+
+            double result = (P[x] * error)
+                    + (sI * totalError[x])
+                    + (D[x] * (error - prevError[x]));
+
+            if (result > sMaxOutput) {
+                result = sMaxOutput;
+            } else if (result < sMinOutput) {
+                result = sMinOutput;
+            }
+
+            outputs[x].set(result);
+            prevError[x] = error;
+            results.lazySet(x, Double.doubleToRawLongBits(result));
+            errors.lazySet(x, Double.doubleToRawLongBits(error));
+        }
+    }
+
+    /**
+     * A single loop of a {@link PIDBank}. Its output is the last result of the
+     * loop, and its setpoint is set through its {@link PositionalActuator}
+     * methods.
+     */
+    public final class Loop implements PositionalSensor, PositionalActuator {
+
+        private final int index;
+
+        private Loop(int index) {
+            this.index = index;
+        }
+
+        /**
+         * Returns the index of this loop in its bank.
+         *
+         * @return index of the loop
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Sets the Proportional, Integral and Derivative coefficients.
+         *
+         * @param P proportional coefficient
+         * @param I integral coefficient
+         * @param D derivative coefficient
+         * @see PIDBank#setPID(int, double, double, double)
+         */
+        public void setPID(double P, double I, double D) {
+            PIDBank.this.setPID(index, P, I, D);
+        }
+
+        /**
+         * Sets the setpoint (or goal) of the loop.
+         *
+         * @param setpoint desired point that the input should reach
+         */
+        public void setSetpoint(double setpoint) {
+            PIDBank.this.setSetpoint(index, setpoint);
+        }
+
+        /**
+         * Returns the currently set setpoint that the loop is aimed towards.
+         *
+         * @return current goal
+         */
+        public double getSetpoint() {
+            return PIDBank.this.get(SETPOINT_SETTING, index);
+        }
+
+        /**
+         * Returns the difference between the last computed setpoint and the
+         * input.
+         *
+         * @return how far off input is from setpoint
+         */
+        public double getError() {
+            return Double.longBitsToDouble(errors.get(index));
+        }
+
+        /**
+         * Returns whether the {@link #getError() error} is below the tolerance
+         * set with {@link PIDBank#setTolerance(int, double)}.
+         *
+         * @return if loop is close enough to target
+         */
+        public boolean onTarget() {
+            double t;
+            synchronized (lock) {
+                t = tolerance[index];
+            }
+            return Math.abs(getError()) < t;
+        }
+
+        /**
+         * Returns the last computed output value.
+         *
+         * @return last result of PID algorithm
+         */
+        @Override
+        public double get() {
+            return Double.longBitsToDouble(results.get(index));
+        }
+
+        /**
+         * Returns the last computed output value.
+         *
+         * @return last result of PID algorithm
+         */
+        @Override
+        public double getPosition() {
+            return get();
+        }
+
+        /**
+         * Sets the setpoint (or goal) of the loop.
+         *
+         * @param value desired point that the input should reach
+         */
+        @Override
+        public void set(double value) {
+            setSetpoint(value);
+        }
+
+        /**
+         * Sets the setpoint (or goal) of the loop.
+         *
+         * @param position desired point that the input should reach
+         */
+        @Override
+        public void setPosition(double position) {
+            setSetpoint(position);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package edu.first.module.controllers;
 
+import edu.first.identifiers.Function;
 import edu.first.identifiers.Input;
 import edu.first.identifiers.Output;
 import edu.first.identifiers.PositionalActuator;
@@ -7,7 +8,9 @@ import edu.first.identifiers.PositionalSensor;
 
 /**
  * Controller that uses the PID algorithm to handle input and output. This class
- * is thread safe and settings can be changed while it is running.
+ * is thread safe and settings can be changed while it is running. Changing
+ * settings and reading results never blocks the loop, and the loop never blocks
+ * anyone else.
  *
  * <p>
  * To understand how PID works, visit:
@@ -23,6 +26,43 @@ import edu.first.identifiers.PositionalSensor;
  * + D * (error - prevError)
  * </pre>
  *
+ * <p>
+ * In {@link #setTimeAware(boolean) time-aware} mode, the time between each
+ * execution ({@code dt}, in seconds) is measured and the algorithm becomes:
+ * <pre>   P * error
+ * + I * sum(error * dt)
+ * + D * (error - prevError) / dt
+ * </pre>
+ *
+ * That keeps the integral and derivative correct when the loop is late, and
+ * means that gains do not need to change with the loop time. Gaps longer than
+ * the {@link #setMaximumDt(double) maximum dt} are clamped to it, and gaps
+ * shorter than a quarter of the loop time are treated as a quarter of the loop
+ * time, so that two executions close together cannot blow up the derivative.
+ *
+ * <p>
+ * In both modes, the derivative is zero on the first execution after the
+ * controller is enabled, since there is no previous error to compare to. The
+ * integral is stored with the I gain already applied (as
+ * {@code sum(I * error)}), which is the same as above while I is constant. When
+ * I changes (with {@link #setI(double)} or a
+ * {@link #setGainSchedule(GainSchedule, GainSchedule.Variable) gain schedule}),
+ * only the error from then on uses the new gain, so the output does not jump.
+ * While I is zero, the integral is cleared, so the I term is removed right
+ * away. The integral is also cleared when the controller is enabled, and can
+ * be cleared at any time with {@link #resetIntegral()}.
+ *
+ * <p>
+ * On top of that, the controller can add a
+ * {@link #setFeedforward(double, double, double) feedforward} term, compute the
+ * derivative from the {@link #setDerivativeOnMeasurement(boolean) measurement}
+ * instead of the error, {@link #setDerivativeFilter(double) low-pass filter}
+ * the derivative, use a different {@link AntiWindup anti-windup strategy}, and
+ * look up its gains in a {@link #setGainSchedule(GainSchedule,
+ * GainSchedule.Variable) gain schedule}.
+ * All of these are off by default, in which case the algorithm is as shown
+ * above (with the integral and first derivative kept as described).
+ *
  * @since June 02 13
  * @author Joel Gallant
  */
@@ -31,17 +71,22 @@ public class PIDController extends Controller implements PositionalSensor, Posit
     private static final double defaultLoopTime = 0.02;
     private final Input input;
     private final Output output;
-    private double P, I, D;
-    private double minimumInput = Double.MIN_VALUE, maximumInput = Double.MAX_VALUE;
-    private double minimumOutput = -1, maximumOutput = +1;
-    // Controller variables
-    // uses lock so user can't lock controller accidentally using "this"
+    // Settings are replaced as a whole, so the loop never waits on a lock.
+    // Uses lock (only between writers) so user can't lock accidentally.
     private final Object lock = new Object();
-    private double setpoint = 0;
-    private double totalError = 0;
-    private double prevError = 0;
-    private double prevResult = 0;
-    private double tolerance = 0;
+    private volatile Settings settings = new Settings();
+    // Results are only written by the loop thread
+    private volatile double prevError = 0;
+    private volatile double prevResult = 0;
+    // set by resetIntegral(), applied by the loop thread
+    private volatile boolean resetIntegral;
+    // Only touched by the loop thread (and when enabling)
+    // sum of I * error (* dt), so that changing I does not change the output
+    private double integral = 0;
+    private long prevTime = 0;
+    private double prevInput = 0;
+    private double filteredDerivative = 0;
+    private boolean hasPrevInput = false;
 
     /**
      * Constructs the controller using its input and output. Uses the default
@@ -66,9 +111,7 @@ public class PIDController extends Controller implements PositionalSensor, Posit
      */
     public PIDController(Input input, Output output, double P, double I, double D) {
         this(input, output);
-        this.P = P;
-        this.I = I;
-        this.D = D;
+        setPID(P, I, D);
     }
 
     /**
@@ -81,7 +124,22 @@ public class PIDController extends Controller implements PositionalSensor, Posit
      * @param loopTime time in seconds each loop should run
      */
     public PIDController(Input input, Output output, double loopTime) {
-        super(loopTime, LoopType.FIXED_RATE);
+        this(input, output, loopTime, LoopType.FIXED_RATE);
+    }
+
+    /**
+     * Constructs the controller using its input and output. Loops at
+     * {@code loopTime} using the given type of loop, like
+     * {@link LoopType#PRECISE_RATE} for fast loops.
+     *
+     * @throws NullPointerException when input or output are null
+     * @param input object to receive input from
+     * @param output object to send output to
+     * @param loopTime time in seconds each loop should run
+     * @param loopType how the loop is timed
+     */
+    public PIDController(Input input, Output output, double loopTime, LoopType loopType) {
+        super(loopTime, loopType);
         if (input == null) {
             throw new NullPointerException("Null input given");
         } else if (output == null) {
@@ -104,9 +162,7 @@ public class PIDController extends Controller implements PositionalSensor, Posit
      */
     public PIDController(Input input, Output output, double loopTime, double P, double I, double D) {
         this(input, output, loopTime);
-        this.P = P;
-        this.I = I;
-        this.D = D;
+        setPID(P, I, D);
     }
 
     /**
@@ -120,7 +176,23 @@ public class PIDController extends Controller implements PositionalSensor, Posit
      * will happen
      */
     public PIDController(Input input, Output output, int loopTimeHertz) {
-        super(loopTimeHertz, LoopType.FIXED_RATE);
+        this(input, output, loopTimeHertz, LoopType.FIXED_RATE);
+    }
+
+    /**
+     * Constructs the controller using its input and output. Loops at
+     * {@code loopTimeHertz} using the given type of loop, like
+     * {@link LoopType#PRECISE_RATE} for fast loops.
+     *
+     * @throws NullPointerException when input or output are null
+     * @param input object to receive input from
+     * @param output object to send output to
+     * @param loopTimeHertz the hertz value that represents how fast execution
+     * will happen
+     * @param loopType how the loop is timed
+     */
+    public PIDController(Input input, Output output, int loopTimeHertz, LoopType loopType) {
+        super(loopTimeHertz, loopType);
         if (input == null) {
             throw new NullPointerException("Null input given");
         } else if (output == null) {
@@ -144,29 +216,167 @@ public class PIDController extends Controller implements PositionalSensor, Posit
      */
     public PIDController(Input input, Output output, int loopTimeHertz, double P, double I, double D) {
         this(input, output, loopTimeHertz);
-        this.P = P;
-        this.I = I;
-        this.D = D;
+        setPID(P, I, D);
     }
 
     /**
      * Sets the setpoint (or goal) or the controller. The PID algorithm should
-     * attempt to bring input as close as possible to this goal.
+     * attempt to bring input as close as possible to this goal. The velocity
+     * and acceleration used for {@link #setFeedforward(double, double, double)
+     * feedforward} are set to zero.
      *
      * @param setpoint desired point that the input should reach
      */
     public void setSetpoint(double setpoint) {
+        setSetpoint(setpoint, 0, 0);
+    }
+
+    /**
+     * Sets the setpoint (or goal) or the controller, along with how fast the
+     * setpoint is moving. The velocity and acceleration are only used by the
+     * {@link #setFeedforward(double, double, double) feedforward}, which is
+     * useful when following a motion profile.
+     *
+     * @param setpoint desired point that the input should reach
+     * @param velocity rate of change of the setpoint (per second)
+     * @param acceleration rate of change of the velocity (per second)
+     */
+    public void setSetpoint(double setpoint, double velocity, double acceleration) {
         synchronized (lock) {
-            if (setpoint < minimumInput) {
-                this.setpoint = minimumInput;
-            } else if (setpoint > maximumInput) {
-                this.setpoint = maximumInput;
-            } else {
-                this.setpoint = setpoint;
-            }
+            Settings s = settings.copy();
+            s.setpoint = s.limitInput(setpoint);
+            s.velocity = velocity;
+            s.acceleration = acceleration;
+            settings = s;
+        }
+    }
+
+    /**
+     * Sets the feedforward coefficients. The feedforward is added to the output
+     * before it is limited to the output range:
+     * <pre>   kS * signum(velocity)
+     * + kV * velocity
+     * + kA * acceleration
+     * </pre>
+     *
+     * Where the velocity and acceleration are those given in
+     * {@link #setSetpoint(double, double, double)}. All are zero by default.
+     *
+     * @param kS static coefficient, output needed to overcome friction
+     * @param kV velocity coefficient
+     * @param kA acceleration coefficient
+     */
+    public void setFeedforward(double kS, double kV, double kA) {
+        synchronized (lock) {
+            Settings s = settings.copy();
+            s.kS = kS;
+            s.kV = kV;
+            s.kA = kA;
+            settings = s;
+        }
+    }
+
+    /**
+     * Sets a function of the setpoint that is added to the output as
+     * feedforward, along with the coefficients given in
+     * {@link #setFeedforward(double, double, double)}. This is useful for
+     * things like the gravity on an arm, which depends on its angle. The
+     * function is called from the loop, so it should be fast and thread safe.
+     *
+     * @param feedforward function of the setpoint, or null for none
+     */
+    public void setFeedforward(Function feedforward) {
+        synchronized (lock) {
+            Settings s = settings.copy();
+            s.feedforward = feedforward;
+            settings = s;
+        }
+    }
+
+    /**
+     * Sets whether the derivative is computed from the change in input instead
+     * of the change in error. Both are the same while the setpoint is constant,
+     * but using the input avoids a large spike of output ("derivative kick")
+     * when the setpoint changes.
+     *
+     * @param onMeasurement if the derivative should use the input
+     */
+    public void setDerivativeOnMeasurement(boolean onMeasurement) {
+        synchronized (lock) {
+            Settings s = settings.copy();
+            s.derivativeOnMeasurement = onMeasurement;
+            settings = s;
+        }
+    }
+
+    /**
+     * Sets how strongly the derivative is low-pass filtered. Each execution,
+     * the derivative used is:
+     * <pre>
+     * filter * previousDerivative + (1 - filter) * derivative
+     * </pre>
+     *
+     * So zero (the default) means no filtering, and values closer to one
+     * smooth out noise (like encoder quantization) at the cost of lag.
+     *
+     * @throws IllegalArgumentException when filter is not in [0, 1)
+     * @param filter smoothing factor, from zero up to (but not including) one
+     */
+    public void setDerivativeFilter(double filter) {
+        if (filter < 0 || filter >= 1) {
+            throw new IllegalArgumentException(filter + " is not between 0 and 1");
+        }
+        synchronized (lock) {
+            Settings s = settings.copy();
+            s.derivativeFilter = filter;
+            settings = s;
+        }
+    }
+
+    /**
+     * Sets how the integral is kept from growing while the output is
+     * saturated. The default is {@link AntiWindup#CLAMPING}.
+     *
+     * @throws NullPointerException when antiWindup is null
+     * @param antiWindup strategy to use
+     */
+    public void setAntiWindup(AntiWindup antiWindup) {
+        if (antiWindup == null) {
+            throw new NullPointerException("Null anti-windup given");
+        }
+        synchronized (lock) {
+            Settings s = settings.copy();
+            s.antiWindup = antiWindup;
+            settings = s;
+        }
+    }
+
+    /**
+     * Sets the gain used by {@link AntiWindup#BACK_CALCULATION}. Larger values
+     * unwind the integral faster. The default is one, which removes all of the
+     * excess in one loop (or in one second, in
+     * {@link #setTimeAware(boolean) time-aware} mode).
+     *
+     * @param gain back-calculation gain
+     */
+    public void setBackCalculationGain(double gain) {
+        synchronized (lock) {
+            Settings s = settings.copy();
+            s.backCalculationGain = gain;
+            settings = s;
         }
     }
 
+    /**
+     * Returns the strategy used to keep the integral from growing while the
+     * output is saturated.
+     *
+     * @return anti-windup strategy
+     */
+    public AntiWindup getAntiWindup() {
+        return settings.antiWindup;
+    }
+
     /**
      * Sets the Proportional coefficient in the PID algorithm.
      *
@@ -175,7 +385,9 @@ public class PIDController extends Controller implements PositionalSensor, Posit
      */
     public void setP(double P) {
         synchronized (lock) {
-            this.P = P;
+            Settings s = settings.copy();
+            s.P = P;
+            settings = s;
         }
     }
 
@@ -187,7 +399,9 @@ public class PIDController extends Controller implements PositionalSensor, Posit
      */
     public void setI(double I) {
         synchronized (lock) {
-            this.I = I;
+            Settings s = settings.copy();
+            s.I = I;
+            settings = s;
         }
     }
 
@@ -199,7 +413,9 @@ public class PIDController extends Controller implements PositionalSensor, Posit
      */
     public void setD(double D) {
         synchronized (lock) {
-            this.D = D;
+            Settings s = settings.copy();
+            s.D = D;
+            settings = s;
         }
     }
 
@@ -214,12 +430,47 @@ public class PIDController extends Controller implements PositionalSensor, Posit
      */
     public void setPID(double P, double I, double D) {
         synchronized (lock) {
-            this.P = P;
-            this.I = I;
-            this.D = D;
+            Settings s = settings.copy();
+            s.P = P;
+            s.I = I;
+            s.D = D;
+            settings = s;
+        }
+    }
+
+    /**
+     * Sets a table of gains that is used instead of the
+     * {@link #setPID(double, double, double) fixed gains}. Every execution, the
+     * gains are interpolated from the schedule using the input or setpoint, and
+     * the schedule's F value is added to the output as feedforward. This
+     * happens inside of the loop, so gains change smoothly at the loop rate.
+     *
+     * @throws NullPointerException when schedule is given without a variable
+     * @param schedule gains to use, or null to go back to the fixed gains
+     * @param variable what value is used to look up gains
+     */
+    public void setGainSchedule(GainSchedule schedule, GainSchedule.Variable variable) {
+        if (schedule != null && variable == null) {
+            throw new NullPointerException("Null variable given");
+        }
+        synchronized (lock) {
+            Settings s = settings.copy();
+            s.schedule = schedule;
+            s.scheduleVariable = variable;
+            settings = s;
         }
     }
 
+    /**
+     * Returns the table of gains being used, or null if the fixed gains are
+     * being used.
+     *
+     * @return current gain schedule
+     */
+    public GainSchedule getGainSchedule() {
+        return settings.schedule;
+    }
+
     /**
      * Returns the Proportional coefficient in the PID algorithm.
      *
@@ -227,9 +478,7 @@ public class PIDController extends Controller implements PositionalSensor, Posit
      * @see PIDController for PID algorithm
      */
     public double getP() {
-        synchronized (lock) {
-            return P;
-        }
+        return settings.P;
     }
 
     /**
@@ -239,9 +488,7 @@ public class PIDController extends Controller implements PositionalSensor, Posit
      * @see PIDController for PID algorithm
      */
     public double getI() {
-        synchronized (lock) {
-            return I;
-        }
+        return settings.I;
     }
 
     /**
@@ -251,9 +498,7 @@ public class PIDController extends Controller implements PositionalSensor, Posit
      * @see PIDController for PID algorithm
      */
     public double getD() {
-        synchronized (lock) {
-            return D;
-        }
+        return settings.D;
     }
 
     /**
@@ -268,8 +513,10 @@ public class PIDController extends Controller implements PositionalSensor, Posit
             throw new IllegalArgumentException(minimumInput + " is larger than " + maximumInput);
         }
         synchronized (lock) {
-            this.minimumInput = minimumInput;
-            this.maximumInput = maximumInput;
+            Settings s = settings.copy();
+            s.minimumInput = minimumInput;
+            s.maximumInput = maximumInput;
+            settings = s;
         }
     }
 
@@ -286,8 +533,10 @@ public class PIDController extends Controller implements PositionalSensor, Posit
             throw new IllegalArgumentException(minimumOutput + " is larger than " + maximumOutput);
         }
         synchronized (lock) {
-            this.minimumOutput = minimumOutput;
-            this.maximumOutput = maximumOutput;
+            Settings s = settings.copy();
+            s.minimumOutput = minimumOutput;
+            s.maximumOutput = maximumOutput;
+            settings = s;
         }
     }
 
@@ -298,7 +547,78 @@ public class PIDController extends Controller implements PositionalSensor, Posit
      * @param tolerance how far off input can be to be considered "on target"
      */
     public void setTolerance(double tolerance) {
-        this.tolerance = tolerance;
+        synchronized (lock) {
+            Settings s = settings.copy();
+            s.tolerance = tolerance;
+            settings = s;
+        }
+    }
+
+    /**
+     * Sets whether the controller measures the real time between executions
+     * and scales the integral and derivative by it. When this is changed, the
+     * {@link #setPID(double, double, double) gains} need to be retuned because
+     * {@code I} and {@code D} are now per second instead of per loop.
+     *
+     * @param timeAware if the time between executions should be measured
+     * @see PIDController for PID algorithm
+     */
+    public void setTimeAware(boolean timeAware) {
+        synchronized (lock) {
+            Settings s = settings.copy();
+            s.timeAware = timeAware;
+            settings = s;
+        }
+    }
+
+    /**
+     * Returns whether the controller measures the real time between
+     * executions.
+     *
+     * @return if controller is time-aware
+     * @see #setTimeAware(boolean)
+     */
+    public boolean isTimeAware() {
+        return settings.timeAware;
+    }
+
+    /**
+     * Sets the largest time between executions that will be used in
+     * {@link #setTimeAware(boolean) time-aware} mode. Longer gaps (when the
+     * robot stalls) are treated as this long, so that one late execution does
+     * not wind up the integral. By default, this is four times the loop time.
+     *
+     * @throws IllegalArgumentException when maximumDt is not positive
+     * @param maximumDt longest time in seconds to use as dt
+     */
+    public void setMaximumDt(double maximumDt) {
+        if (maximumDt <= 0) {
+            throw new IllegalArgumentException(maximumDt + " is not a valid time");
+        }
+        synchronized (lock) {
+            Settings s = settings.copy();
+            s.maximumDt = maximumDt;
+            settings = s;
+        }
+    }
+
+    /**
+     * Returns the largest time between executions that will be used in
+     * {@link #setTimeAware(boolean) time-aware} mode.
+     *
+     * @return longest time in seconds to use as dt
+     */
+    public double getMaximumDt() {
+        double maximumDt = settings.maximumDt;
+        return maximumDt > 0 ? maximumDt : 4 * getLoopTime();
+    }
+
+    /**
+     * Clears the integral, so that the I term starts again from zero on the
+     * next execution. Can be called from any thread.
+     */
+    public void resetIntegral() {
+        resetIntegral = true;
     }
 
     /**
@@ -307,9 +627,7 @@ public class PIDController extends Controller implements PositionalSensor, Posit
      * @return last result of PID algorithm
      */
     public double getPrevResult() {
-        synchronized (lock) {
-            return prevResult;
-        }
+        return prevResult;
     }
 
     /**
@@ -318,9 +636,7 @@ public class PIDController extends Controller implements PositionalSensor, Posit
      * @return current goal
      */
     public double getSetpoint() {
-        synchronized (lock) {
-            return setpoint;
-        }
+        return settings.setpoint;
     }
 
     /**
@@ -329,9 +645,7 @@ public class PIDController extends Controller implements PositionalSensor, Posit
      * @return how far off input is from setpoint
      */
     public double getError() {
-        synchronized (lock) {
-            return prevError;
-        }
+        return prevError;
     }
 
     /**
@@ -341,7 +655,7 @@ public class PIDController extends Controller implements PositionalSensor, Posit
      * @return how far off input can be to be considered "on target"
      */
     public double getTolerance() {
-        return tolerance;
+        return settings.tolerance;
     }
 
     /**
@@ -351,7 +665,7 @@ public class PIDController extends Controller implements PositionalSensor, Posit
      * @return if controller is close enough to target
      */
     public boolean onTarget() {
-        return Math.abs(getError()) < tolerance;
+        return Math.abs(prevError) < settings.tolerance;
     }
 
     /**
@@ -361,72 +675,208 @@ public class PIDController extends Controller implements PositionalSensor, Posit
      */
     @Override
     public final void run() {
+        // Settings are never changed once published, so one read is a
+        // consistent snapshot
+        Settings s = this.settings;
+        output.set(calculate(s, s.setpoint, s.velocity, s.acceleration));
+    }
+
+    /**
+     * Runs the PID algorithm without sending the result to the output. This
+     * is used by {@link CascadeController}, which gives the result to the
+     * inner controller directly.
+     *
+     * @return result of the PID algorithm
+     */
+    final double compute() {
+        Settings s = this.settings;
+        return calculate(s, s.setpoint, s.velocity, s.acceleration);
+    }
+
+    /**
+     * Runs the PID algorithm once with a setpoint that is only used for this
+     * execution, and the velocity and acceleration that were last set with
+     * {@link #setSetpoint(double, double, double)}.
+     *
+     * @param setpoint desired point that the input should reach
+     */
+    final void run(double setpoint) {
+        Settings s = this.settings;
+        output.set(calculate(s, s.limitInput(setpoint), s.velocity, s.acceleration));
+    }
+
+    /**
+     * Runs the PID algorithm once with a setpoint that is only used for this
+     * execution. This is used by controllers that run this one as part of
+     * their own loop, like {@link ProfiledPIDController}, so that the setpoint
+     * can change every tick without publishing new settings.
+     *
+     * @param setpoint desired point that the input should reach
+     * @param velocity rate of change of the setpoint (per second)
+     * @param acceleration rate of change of the velocity (per second)
+     */
+    final void run(double setpoint, double velocity, double acceleration) {
+        Settings s = this.settings;
+        output.set(calculate(s, s.limitInput(setpoint), velocity, acceleration));
+    }
+
+    private double calculate(Settings s, double setpoint, double velocity, double acceleration) {
         double in = input.get();
+        long now = System.nanoTime();
+        double dt;
+
+        if (s.timeAware) {
+            double loopTime = getLoopTime();
+            double maxDt = s.maximumDt > 0 ? s.maximumDt : 4 * loopTime;
+            // lower bound keeps the derivative sane when two ticks are close
+            double minDt = Math.min(loopTime / 4, maxDt);
+            dt = prevTime == 0 ? loopTime : (now - prevTime) / 1e9;
+            if (dt > maxDt) {
+                dt = maxDt;
+            } else if (dt < minDt) {
+                dt = minDt;
+            }
+        } else {
+            // every loop counts as one unit of time
+            dt = 1;
+        }
+        prevTime = now;
+
+        if (in < s.minimumInput) {
+            in = s.minimumInput;
+        } else if (in > s.maximumInput) {
+            in = s.maximumInput;
+        }
+
+        double error = setpoint - in;
+
+        double P = s.P, I = s.I, D = s.D;
+        double scheduledFeedforward = 0;
+        if (s.schedule != null) {
+            double x = s.scheduleVariable == GainSchedule.Variable.INPUT ? in : setpoint;
+            int i = s.schedule.lowerIndex(x);
+            double w = s.schedule.weight(i, x);
+            P = s.schedule.P(i, w);
+            I = s.schedule.I(i, w);
+            D = s.schedule.D(i, w);
+            scheduledFeedforward = s.schedule.F(i, w);
+        }
+
+        double derivative;
+        if (s.derivativeOnMeasurement) {
+            derivative = hasPrevInput ? -(in - prevInput) / dt : 0;
+        } else {
+            // prevError is stale on the first execution after restarting
+            derivative = hasPrevInput ? (error - prevError) / dt : 0;
+        }
+        if (s.derivativeFilter > 0) {
+            derivative = s.derivativeFilter * filteredDerivative
+                    + (1 - s.derivativeFilter) * derivative;
+        }
+        filteredDerivative = derivative;
+        prevInput = in;
+        hasPrevInput = true;
+
+        double feedforward = scheduledFeedforward
+                + (s.kS * Math.signum(velocity))
+                + (s.kV * velocity)
+                + (s.kA * acceleration);
+        if (s.feedforward != null) {
+            feedforward += s.feedforward.F(setpoint);
+        }
+
+        if (resetIntegral) {
+            resetIntegral = false;
+            integral = 0;
+        }
+        // the I term is removed right away when I is zero
+        double sIntegral = I == 0 ? 0 : integral;
+        double withoutIntegral = (P * error) + (D * derivative) + feedforward;
         double result;
-        double prevErr;
-
-        double sMinInput;
-        double sMaxInput;
-        double sSetpoint;
-        double sP;
-        double sI;
-        double sD;
-        double sTotalError;
-        double sMaxOutput;
-        double sMinOutput;
-
-        // Snapshot values to reduce time spent in synchronized blocks
-        synchronized (lock) {
-            sMinInput = this.minimumInput;
-            sMaxInput = this.maximumInput;
-            sSetpoint = this.setpoint;
-            sP = this.P;
-            sI = this.I;
-            sD = this.D;
-            sTotalError = this.totalError;
-            sMaxOutput = this.maximumOutput;
-            sMinOutput = this.minimumOutput;
-            prevErr = this.prevError;
-        }
-
-        if (in < sMinInput) {
-            in = sMinInput;
-        } else if (in > sMaxInput) {
-            in = sMaxInput;
-        }
-
-        double error = sSetpoint - in;
-
-        if (sI != 0) {
-            double potentialIGain = (sTotalError + error) * sI;
-            if (potentialIGain < sMaxOutput) {
-                if (potentialIGain > sMinOutput) {
-                    sTotalError += error;
-                } else {
-                    sTotalError = sMinOutput / sI;
+
+        switch (s.antiWindup) {
+            case CONDITIONAL_INTEGRATION: {
+                // only integrate if it doesn't push further into saturation
+                double candidate = sIntegral + I * error * dt;
+                double unlimited = withoutIntegral + candidate;
+                if ((unlimited < s.maximumOutput || error * I < 0)
+                        && (unlimited > s.minimumOutput || error * I > 0)) {
+                    sIntegral = candidate;
                 }
-            } else {
-                sTotalError = sMaxOutput / sI;
+                result = withoutIntegral + sIntegral;
+                break;
+            }
+            case BACK_CALCULATION: {
+                sIntegral += I * error * dt;
+                double unlimited = withoutIntegral + sIntegral;
+                double limited = limit(unlimited, s.minimumOutput, s.maximumOutput);
+                if (I != 0) {
+                    // bleed off the part of the integral that was cut off
+                    sIntegral += s.backCalculationGain * (limited - unlimited) * dt;
+                }
+                result = withoutIntegral + sIntegral;
+                break;
+            }
+            default: {
+                if (I != 0) {
+                    double potentialIGain = sIntegral + I * error * dt;
+                    if (potentialIGain < s.maximumOutput) {
+                        if (potentialIGain > s.minimumOutput) {
+                            sIntegral = potentialIGain;
+                        } else {
+                            sIntegral = s.minimumOutput;
+                        }
+                    } else {
+                        sIntegral = s.maximumOutput;
+                    }
+                }
+                result = withoutIntegral + sIntegral;
+                break;
             }
         }
 
-        result = (sP * error)
-                + (sI * sTotalError)
-                + (sD * (error - prevErr));
+        result = limit(result, s.minimumOutput, s.maximumOutput);
 
-        if (result > sMaxOutput) {
-            result = sMaxOutput;
-        } else if (result < sMinOutput) {
-            result = sMinOutput;
+        integral = sIntegral;
+        prevError = error;
+        prevResult = result;
+        return result;
+    }
+
+    private static double limit(double value, double min, double max) {
+        if (value > max) {
+            return max;
+        } else if (value < min) {
+            return min;
+        } else {
+            return value;
         }
+    }
 
-        output.set(result);
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Restarts the measurement of time between executions, so that time spent
+     * disabled is not counted, and clears the integral.
+     */
+    @Override
+    protected void enableModule() {
+        restart();
+        super.enableModule();
+    }
 
-        synchronized (lock) {
-            prevError = error;
-            prevResult = result;
-            totalError = sTotalError;
-        }
+    /**
+     * Restarts the measurement of time between executions and clears the
+     * integral. Controllers that run this one as part of their own loop call
+     * this when they are enabled.
+     */
+    @Override
+    final void restart() {
+        prevTime = 0;
+        hasPrevInput = false;
+        filteredDerivative = 0;
+        integral = 0;
     }
 
     /**
@@ -437,9 +887,7 @@ public class PIDController extends Controller implements PositionalSensor, Posit
      */
     @Override
     public double get() {
-        synchronized (lock) {
-            return prevResult;
-        }
+        return prevResult;
     }
 
     /**
@@ -451,15 +899,7 @@ public class PIDController extends Controller implements PositionalSensor, Posit
      */
     @Override
     public void set(double value) {
-        synchronized (lock) {
-            if (value < minimumInput) {
-                this.setpoint = minimumInput;
-            } else if (value > maximumInput) {
-                this.setpoint = maximumInput;
-            } else {
-                this.setpoint = value;
-            }
-        }
+        setSetpoint(value);
     }
 
     /**
@@ -470,9 +910,7 @@ public class PIDController extends Controller implements PositionalSensor, Posit
      */
     @Override
     public double getPosition() {
-        synchronized (lock) {
-            return prevResult;
-        }
+        return prevResult;
     }
 
     /**
@@ -484,14 +922,94 @@ public class PIDController extends Controller implements PositionalSensor, Posit
      */
     @Override
     public void setPosition(double position) {
-        synchronized (lock) {
-            if (position < minimumInput) {
-                this.setpoint = minimumInput;
-            } else if (position > maximumInput) {
-                this.setpoint = maximumInput;
+        setSetpoint(position);
+    }
+
+    /**
+     * The settings of the controller. An instance is never modified after it
+     * has been published to {@link PIDController#settings}, changes are made
+     * to a copy which then replaces it.
+     */
+    private static final class Settings {
+
+        private double P, I, D;
+        private double minimumInput = Double.MIN_VALUE, maximumInput = Double.MAX_VALUE;
+        private double minimumOutput = -1, maximumOutput = +1;
+        private double setpoint = 0;
+        private double tolerance = 0;
+        private boolean timeAware = false;
+        private double maximumDt = 0;
+        private double velocity = 0, acceleration = 0;
+        private double kS = 0, kV = 0, kA = 0;
+        private Function feedforward = null;
+        private boolean derivativeOnMeasurement = false;
+        private double derivativeFilter = 0;
+        private AntiWindup antiWindup = AntiWindup.CLAMPING;
+        private double backCalculationGain = 1;
+        private GainSchedule schedule = null;
+        private GainSchedule.Variable scheduleVariable = null;
+
+        Settings copy() {
+            Settings s = new Settings();
+            s.P = P;
+            s.I = I;
+            s.D = D;
+            s.minimumInput = minimumInput;
+            s.maximumInput = maximumInput;
+            s.minimumOutput = minimumOutput;
+            s.maximumOutput = maximumOutput;
+            s.setpoint = setpoint;
+            s.tolerance = tolerance;
+            s.timeAware = timeAware;
+            s.maximumDt = maximumDt;
+            s.velocity = velocity;
+            s.acceleration = acceleration;
+            s.kS = kS;
+            s.kV = kV;
+            s.kA = kA;
+            s.feedforward = feedforward;
+            s.derivativeOnMeasurement = derivativeOnMeasurement;
+            s.derivativeFilter = derivativeFilter;
+            s.antiWindup = antiWindup;
+            s.backCalculationGain = backCalculationGain;
+            s.schedule = schedule;
+            s.scheduleVariable = scheduleVariable;
+            return s;
+        }
+
+        double limitInput(double value) {
+            if (value < minimumInput) {
+                return minimumInput;
+            } else if (value > maximumInput) {
+                return maximumInput;
             } else {
-                this.setpoint = position;
+                return value;
             }
         }
     }
+
+    /**
+     * Enum representing the ways that the integral can be kept from growing
+     * ("winding up") while the output is saturated.
+     */
+    public static enum AntiWindup {
+
+        /**
+         * Limits the integral so that the integral term alone can never be
+         * outside of the output range. This is the default.
+         */
+        CLAMPING,
+        /**
+         * Integrates freely, but whenever the output is limited the difference
+         * is fed back into the integral (multiplied by the
+         * {@link PIDController#setBackCalculationGain(double) back-calculation
+         * gain}), so it unwinds as soon as the output saturates.
+         */
+        BACK_CALCULATION,
+        /**
+         * Stops integrating while the output is saturated, unless the error
+         * would bring the output back out of saturation.
+         */
+        CONDITIONAL_INTEGRATION;
+    }
 }
@@ -0,0 +1,269 @@
+package edu.first.module.controllers;
+
+import edu.first.identifiers.PositionalActuator;
+import edu.first.identifiers.PositionalSensor;
+
+/**
+ * Controller that moves a {@link PIDController PIDController's} setpoint along
+ * a {@link MotionProfile} instead of jumping to the goal. Every tick, the
+ * sample of the profile for the current time is given to the PID controller
+ * (with its velocity and acceleration, for
+ * {@link PIDController#setFeedforward(double, double, double) feedforward})
+ * and the PID algorithm is run in the same tick, without allocating.
+ *
+ * <p>
+ * The PID controller given is run by this controller, so it should
+ * <b>not</b> be enabled itself. Enable this controller instead.
+ *
+ * <p>
+ * Profiles can be given directly with {@link #setProfile(MotionProfile)}, or
+ * generated from the last setpoint with {@link #moveTo(double)} using the
+ * constraints given in {@link #setConstraints(double, double, double)}.
+ *
+ * @since October 18 26
+ * @author Joel Gallant
+ */
+public class ProfiledPIDController extends Controller implements PositionalSensor, PositionalActuator {
+
+    private final PIDController controller;
+    // uses lock so user can't lock controller accidentally using "this"
+    private final Object lock = new Object();
+    private volatile Segment segment;
+    private double maxVelocity = Double.NaN, maxAcceleration = Double.NaN, maxJerk = 0;
+
+    /**
+     * Constructs the controller using the PID controller whose setpoint is
+     * profiled. Runs at the same loop time as that controller.
+     *
+     * @throws NullPointerException when controller is null
+     * @param controller controller to run with profiled setpoints
+     */
+    public ProfiledPIDController(PIDController controller) {
+        this(controller, LoopType.FIXED_RATE);
+    }
+
+    /**
+     * Constructs the controller using the PID controller whose setpoint is
+     * profiled. Runs at the same loop time as that controller, using the given
+     * type of loop.
+     *
+     * @throws NullPointerException when controller is null
+     * @param controller controller to run with profiled setpoints
+     * @param loopType how the loop is timed
+     */
+    public ProfiledPIDController(PIDController controller, LoopType loopType) {
+        super(loopTime(controller), loopType);
+        this.controller = controller;
+        this.segment = new Segment(null, 0);
+    }
+
+    // checked before the super constructor uses the controller
+    private static double loopTime(PIDController controller) {
+        if (controller == null) {
+            throw new NullPointerException("Null controller given");
+        }
+        return controller.getLoopTime();
+    }
+
+    /**
+     * Sets the limits used to generate profiles in {@link #moveTo(double)}. A
+     * jerk of zero generates trapezoidal profiles, otherwise S-curves are used.
+     *
+     * @throws IllegalArgumentException when velocity or acceleration are not
+     * positive, or jerk is negative
+     * @param maxVelocity highest velocity (per second)
+     * @param maxAcceleration highest acceleration (per second squared)
+     * @param maxJerk highest jerk (per second cubed), or zero for none
+     */
+    public void setConstraints(double maxVelocity, double maxAcceleration, double maxJerk) {
+        if (!(maxVelocity > 0) || !(maxAcceleration > 0) || maxJerk < 0) {
+            throw new IllegalArgumentException("Invalid constraints " + maxVelocity
+                    + ", " + maxAcceleration + ", " + maxJerk);
+        }
+        synchronized (lock) {
+            this.maxVelocity = maxVelocity;
+            this.maxAcceleration = maxAcceleration;
+            this.maxJerk = maxJerk;
+        }
+    }
+
+    /**
+     * Starts following a profile from its beginning. The profile is generated
+     * from the current setpoint (the one the last profile reached, or the PID
+     * controller's setpoint) to {@code goal}, using the constraints given in
+     * {@link #setConstraints(double, double, double)}.
+     *
+     * @throws IllegalStateException when constraints have not been set
+     * @param goal position to move to
+     */
+    public void moveTo(double goal) {
+        double v, a, j;
+        synchronized (lock) {
+            v = maxVelocity;
+            a = maxAcceleration;
+            j = maxJerk;
+        }
+        if (Double.isNaN(v)) {
+            throw new IllegalStateException("Constraints have not been set");
+        }
+        double start = getSetpoint();
+        double sampleTime = getLoopTime();
+        setProfile(j > 0 ? MotionProfile.sCurve(start, goal, v, a, j, sampleTime)
+                : MotionProfile.trapezoidal(start, goal, v, a, sampleTime));
+    }
+
+    /**
+     * Starts following a profile from its beginning. Whatever profile was being
+     * followed is abandoned.
+     *
+     * @throws NullPointerException when profile is null
+     * @param profile profile to follow
+     */
+    public void setProfile(MotionProfile profile) {
+        if (profile == null) {
+            throw new NullPointerException("Null profile given");
+        }
+        segment = new Segment(profile, System.nanoTime());
+    }
+
+    /**
+     * Returns the profile that is being followed, or null if no profile has
+     * been given.
+     *
+     * @return current profile
+     */
+    public MotionProfile getProfile() {
+        return segment.profile;
+    }
+
+    /**
+     * Returns whether the end of the current profile has been reached (or
+     * there is no profile).
+     *
+     * @return if profile is done
+     */
+    public boolean isProfileFinished() {
+        Segment s = segment;
+        return s.profile == null || s.index >= s.profile.size() - 1;
+    }
+
+    /**
+     * Returns whether the profile is finished and the PID controller is
+     * {@link PIDController#onTarget() on target}.
+     *
+     * @return if controller has reached its goal
+     */
+    public boolean onTarget() {
+        return isProfileFinished() && controller.onTarget();
+    }
+
+    /**
+     * Returns the setpoint that is currently given to the PID controller. If
+     * no profile is being followed, this is the PID controller's setpoint.
+     *
+     * @return current profiled setpoint
+     */
+    public double getSetpoint() {
+        Segment s = segment;
+        return s.profile == null ? controller.getSetpoint() : s.profile.getPosition(s.index);
+    }
+
+    /**
+     * Returns the position that the current profile ends at.
+     *
+     * @return final goal
+     */
+    public double getGoal() {
+        MotionProfile profile = segment.profile;
+        return profile == null ? controller.getSetpoint() : profile.getEnd();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Also restarts the PID controller's measurement of time between
+     * executions.
+     */
+    @Override
+    protected void enableModule() {
+        restart();
+        super.enableModule();
+    }
+
+    @Override
+    void restart() {
+        controller.restart();
+    }
+
+    /**
+     * Runs the PID controller with the setpoint from the profile.
+     */
+    @Override
+    public final void run() {
+        Segment s = segment;
+        if (s.profile == null) {
+            controller.run();
+            return;
+        }
+        int i = s.profile.indexAt((System.nanoTime() - s.start) / 1e9);
+        s.index = i;
+        controller.run(s.profile.getPosition(i), s.profile.getVelocity(i), s.profile.getAcceleration(i));
+    }
+
+    /**
+     * Returns the last computed output value of the PID controller.
+     *
+     * @return last result of PID algorithm
+     */
+    @Override
+    public double get() {
+        return controller.get();
+    }
+
+    /**
+     * Returns the last computed output value of the PID controller.
+     *
+     * @return last result of PID algorithm
+     */
+    @Override
+    public double getPosition() {
+        return controller.get();
+    }
+
+    /**
+     * Moves to the value using a generated profile.
+     *
+     * @param value position to move to
+     * @see #moveTo(double)
+     */
+    @Override
+    public void set(double value) {
+        moveTo(value);
+    }
+
+    /**
+     * Moves to the position using a generated profile.
+     *
+     * @param position position to move to
+     * @see #moveTo(double)
+     */
+    @Override
+    public void setPosition(double position) {
+        moveTo(position);
+    }
+
+    // a profile and when it was started, replaced together
+    private static final class Segment {
+
+        private final MotionProfile profile;
+        private final long start;
+        // only written by the loop thread
+        private volatile int index;
+
+        Segment(MotionProfile profile, long start) {
+            this.profile = profile;
+            this.start = start;
+        }
+    }
+}
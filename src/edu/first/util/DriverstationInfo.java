@@ -20,6 +20,10 @@ import edu.wpi.first.wpilibj.DriverStation;
 public final class DriverstationInfo {
 
     private static final DriverStation DS = DriverStation.getInstance();
+    // when the robot (this class) started, for getCachedTime()
+    private static final long START = System.nanoTime();
+    private static volatile GameMode cachedGamePeriod;
+    private static volatile long cachedTime;
 
     // cannot be subclassed or instantiated
     private DriverstationInfo() throws IllegalAccessException {
@@ -129,6 +133,50 @@ public final class DriverstationInfo {
                 : GameMode.DISABLED;
     }
 
+    /**
+     * Reads the game mode from the DriverStation and the time since the robot
+     * started, and keeps them for {@link #getCachedGamePeriod()} and
+     * {@link #getCachedTime()}. This is called by
+     * {@link edu.first.main.GamePeriods} at the start of every loop, so there
+     * is usually no need to call it.
+     */
+    public static void update() {
+        cachedTime = time();
+        cachedGamePeriod = getGamePeriod();
+    }
+
+    // time since the robot started, never negative
+    private static long time() {
+        return Math.max(0, System.nanoTime() - START);
+    }
+
+    /**
+     * Returns the game mode from the last time {@link #update()} was called.
+     * Unlike {@link #getGamePeriod()}, this does not ask the DriverStation, so
+     * it can be called as often as needed (like for every log message). If
+     * {@link #update()} has never been called, this is the same as
+     * {@link #getGamePeriod()}.
+     *
+     * @return which game mode it was in the current loop
+     */
+    public static GameMode getCachedGamePeriod() {
+        GameMode period = cachedGamePeriod;
+        return period == null ? getGamePeriod() : period;
+    }
+
+    /**
+     * Returns the time since the robot started, from the last time
+     * {@link #update()} was called. The time is monotonic (it never goes
+     * backwards), is never negative and does not restart when the game mode
+     * changes. If {@link #update()} has never been called, the current time is
+     * returned.
+     *
+     * @return nanoseconds since the robot started, as of the current loop
+     */
+    public static long getCachedTime() {
+        return cachedGamePeriod == null ? time() : cachedTime;
+    }
+
     /**
      * Returns whether or not the DriverStation is currently in autonomous mode.
      *
@@ -0,0 +1,240 @@
+package edu.first.util.log;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded ring of messages that are sent to logs by a background thread. See
+ * {@link Logger#setAsync(int, Logger.Overflow)}.
+ *
+ * <p>
+ * Any thread can add messages without locking. Every slot owns a
+ * {@link StringBuilder} that the message is formatted into, so adding a message
+ * does not allocate. Each slot has a sequence number that says whether it is
+ * free (for the lap of the ring that is being added to) or full (for the lap
+ * that is being read).
+ *
+ * @since October 18 26
+ * @author Joel Gallant
+ */
+final class LogRing implements Runnable {
+
+    // one of every SAMPLE_RATE messages waits for space with Overflow.SAMPLE
+    private static final int SAMPLE_RATE = 16;
+    // wait for space in the ring
+    private static final long FULL_WAIT = 50000;
+    // longest time that await() waits, so that a slow log cannot stall the robot
+    private static final long AWAIT_LIMIT = 100000000;
+    // longest the writer sleeps when nothing wakes it up
+    private static final long IDLE_WAIT = 100000000;
+    private final int mask;
+    private final Slot[] slots;
+    private final AtomicLongArray sequence;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    // threads that are in offer(), so that stop() sends what they add
+    private final AtomicInteger adding = new AtomicInteger();
+    private final Logger.Overflow overflow;
+    private final Thread writer;
+    // only used by the thread that is reading
+    private long head;
+    private volatile boolean running = true;
+    private volatile boolean waiting;
+
+    /**
+     * Constructs the ring and starts its writer thread.
+     *
+     * @param capacity amount of messages that can wait (a power of two)
+     * @param overflow what to do when the ring is full
+     */
+    LogRing(int capacity, Logger.Overflow overflow) {
+        this.mask = capacity - 1;
+        this.slots = new Slot[capacity];
+        this.sequence = new AtomicLongArray(capacity);
+        for (int x = 0; x < capacity; x++) {
+            slots[x] = new Slot();
+            sequence.set(x, x);
+        }
+        this.overflow = overflow;
+        this.writer = new Thread(this, "Logger");
+        writer.setDaemon(true);
+        writer.setPriority(Thread.NORM_PRIORITY - 1);
+        writer.start();
+    }
+
+    /**
+     * Adds a message to be sent by the writer thread. Messages that are logged
+     * by the writer thread itself (like errors from a log) are not added,
+     * since it would wait for itself when the ring is full.
+     *
+     * @param logger logger that sends the message
+     * @param level level of the message
+     * @param msg message to send, or template with {@code count} values
+     * @param count amount of values (a, b, c) that are in the template
+     * @param a first value
+     * @param b second value
+     * @param c third value
+     * @param error error to print the stack trace of, or null
+     * @return false if the message should be sent directly instead
+     */
+    boolean offer(Logger logger, Logger.Level level, String msg, int count, double a, double b, double c,
+            Throwable error) {
+        if (Thread.currentThread() == writer) {
+            return false;
+        }
+        // counted before checking running, so that stop() waits for this
+        adding.incrementAndGet();
+        try {
+            return add(logger, level, msg, count, a, b, c, error);
+        } finally {
+            adding.decrementAndGet();
+        }
+    }
+
+    private boolean add(Logger logger, Logger.Level level, String msg, int count, double a, double b, double c,
+            Throwable error) {
+        if (!running) {
+            return false;
+        }
+        // errors are never dropped
+        boolean decided = false, wait = level.compareTo(Logger.Level.ERROR) >= 0;
+        long pos;
+        int index;
+        while (true) {
+            pos = tail.get();
+            index = (int) (pos & mask);
+            long difference = sequence.get(index) - pos;
+            if (difference == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+            } else if (difference < 0) {
+                // full
+                if (!decided) {
+                    decided = true;
+                    wait |= overflow == Logger.Overflow.BLOCK
+                            || (overflow == Logger.Overflow.SAMPLE && overflowed.getAndIncrement() % SAMPLE_RATE == 0);
+                }
+                if (!running) {
+                    // stopped while waiting for space, so it is sent directly
+                    return false;
+                } else if (!wait) {
+                    dropped.incrementAndGet();
+                    return true;
+                }
+                wake();
+                LockSupport.parkNanos(this, FULL_WAIT);
+            }
+        }
+        Slot slot = slots[index];
+        slot.text.setLength(0);
+        logger.format(slot.text, level, msg, count, a, b, c);
+        slot.logger = logger;
+        slot.error = error;
+        sequence.set(index, pos + 1);
+        if (waiting) {
+            wake();
+        }
+        return true;
+    }
+
+    /**
+     * Waits until every message that has been added is sent, or for at most a
+     * tenth of a second.
+     */
+    void await() {
+        long last = tail.get() - 1;
+        if (last < 0 || Thread.currentThread() == writer) {
+            return;
+        }
+        int index = (int) (last & mask);
+        long end = System.nanoTime() + AWAIT_LIMIT;
+        // the slot is released for the next lap once the message was sent
+        while (running && sequence.get(index) - (last + mask + 1) < 0 && System.nanoTime() - end < 0) {
+            wake();
+            LockSupport.parkNanos(this, FULL_WAIT);
+        }
+    }
+
+    private void wake() {
+        waiting = false;
+        LockSupport.unpark(writer);
+    }
+
+    /**
+     * Stops the writer thread after it has sent every message that is waiting,
+     * including messages that other threads are adding at the same time.
+     */
+    void stop() {
+        running = false;
+        LockSupport.unpark(writer);
+        if (Thread.currentThread() != writer) {
+            try {
+                writer.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Sends messages until the ring is stopped.
+     */
+    @Override
+    public void run() {
+        while (running) {
+            if (!drain()) {
+                waiting = true;
+                if (isEmpty() && running) {
+                    LockSupport.parkNanos(this, IDLE_WAIT);
+                }
+                waiting = false;
+            }
+        }
+        // messages added before the ring stopped, some can still be written
+        while (adding.get() > 0) {
+            if (!drain()) {
+                LockSupport.parkNanos(this, FULL_WAIT);
+            }
+        }
+        drain();
+    }
+
+    private boolean isEmpty() {
+        return sequence.get((int) (head & mask)) != head + 1;
+    }
+
+    // sends every message that is in the ring
+    private boolean drain() {
+        boolean sent = false;
+        while (!isEmpty()) {
+            int index = (int) (head & mask);
+            Slot slot = slots[index];
+            String text = slot.text.toString();
+            Logger logger = slot.logger;
+            Throwable error = slot.error;
+            slot.logger = null;
+            slot.error = null;
+            logger.deliver(text, error);
+            // released after sending, so that await() knows it was sent
+            sequence.set(index, head + mask + 1);
+            head++;
+            sent = true;
+        }
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            Logger.getLogger(Logger.class).warn(lost + " log messages were dropped because the log was full");
+        }
+        return sent;
+    }
+
+    private static final class Slot {
+
+        private final StringBuilder text = new StringBuilder(128);
+        private Logger logger;
+        private Throwable error;
+    }
+}
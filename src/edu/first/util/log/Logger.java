@@ -1,20 +1,55 @@
 package edu.first.util.log;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.Flushable;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
 import edu.first.util.DriverstationInfo;
 import edu.first.util.TextFiles;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * The logging abstraction that allows users to log messages at different
  * levels. This class allows the programmer to add custom logs that accompany
  * the console to tell the user about things.
  *
+ * <p>
+ * Loggers can be used, and logs added to them, from any thread.
+ *
+ * <p>
+ * By default, messages are sent to every log on the thread that logs them.
+ * Logs like the console can take milliseconds to write, which is too long for
+ * the control loops, so logging can be made {@link #setAsync(int, Overflow)
+ * asynchronous}. Messages are then put in a buffer and sent by a background
+ * thread.
+ *
+ * <p>
+ * Messages below the {@link #setLevel(Level) level} are ignored before any
+ * work is done. Messages that contain numbers can be logged with a template,
+ * like {@code debug("Arm at {} degrees, target {}", angle, target)}, so that
+ * the message is only built when it will be logged, and is built in a buffer
+ * that is reused instead of by concatenating strings.
+ *
+ * <p>
+ * Every message starts with the game mode and the time since the robot
+ * started, like {@code AUTONOMOUS 83.482s}. Both are the ones
+ * {@link DriverstationInfo#update() cached for the current loop}, so logging
+ * does not ask the DriverStation or read the clock, and every message of a
+ * loop has the same time.
+ *
  * @since June 10 13
  * @author Joel Gallant
  */
@@ -30,11 +65,30 @@ public final class Logger {
             System.out.println(msg);
         }
     };
-    private static final List<Log> DEFAULT_LOGS = Arrays
-            .asList(new Log[]{CONSOLE_LOG});
-    private static final HashMap<Class<?>, Logger> loggers = new HashMap<>();
+    private static final ConcurrentHashMap<Class<?>, Logger> loggers = new ConcurrentHashMap<>();
+    // uses lock so user can't lock the class accidentally
+    private static final Object logsLock = new Object();
+    // logs that new loggers start with, replaced (never changed) when a log is added
+    private static volatile Log[] defaultLogs = {CONSOLE_LOG};
+    private static final Object asyncLock = new Object();
+    private static volatile LogRing ring;
+    private static volatile Level level = Level.DEBUG;
+    private static final ThreadLocal<StringBuilder> buffers = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(128);
+        }
+    };
+    private static boolean hooked;
+    private static final Object flushLock = new Object();
+    // flushes logs in the background, started when it is first needed
+    private static Thread flusher;
+    private static boolean flushRequested;
+    // file logs that the flusher writes out when their messages get old
+    private static final List<BufferedFileLog> buffered = new CopyOnWriteArrayList<>();
     private final Class<?> origin;
-    private final List<Log> logs = new ArrayList<>(DEFAULT_LOGS);
+    // replaced (never changed) when a log is added, so it can be read without locking
+    private volatile Log[] logs;
 
     /**
      * Returns the current logger for the origin. All loggers with the same
@@ -45,10 +99,18 @@ public final class Logger {
      * origin
      */
     public static Logger getLogger(Class<?> origin) {
-        if (!loggers.containsKey(origin)) {
-            loggers.put(origin, new Logger(origin));
+        Logger logger = loggers.get(origin);
+        if (logger == null) {
+            // locked so that a log added to all loggers cannot be missed
+            synchronized (logsLock) {
+                logger = loggers.get(origin);
+                if (logger == null) {
+                    logger = new Logger(origin, defaultLogs);
+                    loggers.put(origin, logger);
+                }
+            }
         }
-        return (Logger) loggers.get(origin);
+        return logger;
     }
 
     /**
@@ -76,15 +138,233 @@ public final class Logger {
      * @see #addLog(edu.first.util.log.Logger.Log)
      */
     public static void addLogToAll(Log log) {
+        if (log == null) {
+            throw new NullPointerException("Null log given");
+        }
+        synchronized (logsLock) {
+            for (Logger l : loggers.values()) {
+                l.addLog(log);
+            }
+            defaultLogs = append(defaultLogs, log);
+        }
+    }
+
+    private static Log[] append(Log[] logs, Log log) {
+        Log[] added = Arrays.copyOf(logs, logs.length + 1);
+        added[logs.length] = log;
+        return added;
+    }
+
+    /**
+     * Makes every logger send messages from a background thread. Logging a
+     * message then only formats it into a buffer that can hold
+     * {@code capacity} messages. When the buffer is full, {@code overflow}
+     * decides what happens to new messages. Errors and fatal messages always
+     * wait for space instead of being dropped. When the program exits,
+     * messages that are in the buffer are still sent.
+     *
+     * <p>
+     * If logging is already asynchronous, messages in the old buffer are sent
+     * before the new one is used.
+     *
+     * @throws IllegalArgumentException when capacity is less than 1
+     * @throws NullPointerException when overflow is null
+     * @param capacity how many messages can wait to be sent (rounded up to a
+     * power of two)
+     * @param overflow what to do with messages when the buffer is full
+     */
+    public static void setAsync(int capacity, Overflow overflow) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException(capacity + " is not a valid capacity");
+        }
+        if (overflow == null) {
+            throw new NullPointerException("Null overflow given");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        synchronized (asyncLock) {
+            setSync();
+            if (!hooked) {
+                hooked = true;
+                Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        setSync();
+                    }
+                }, "Logger Shutdown"));
+            }
+            ring = new LogRing(size, overflow);
+        }
+    }
+
+    /**
+     * Makes every logger send messages on the thread that logs them (the
+     * default). If logging was asynchronous, this waits until every message in
+     * the buffer has been sent.
+     */
+    public static void setSync() {
+        LogRing r;
+        synchronized (asyncLock) {
+            r = ring;
+            ring = null;
+        }
+        if (r != null) {
+            r.stop();
+        }
+    }
+
+    /**
+     * Returns whether messages are sent from a background thread.
+     *
+     * @return if logging is asynchronous
+     * @see #setAsync(int, Overflow)
+     */
+    public static boolean isAsync() {
+        return ring != null;
+    }
+
+    /**
+     * Sets the lowest level of messages that are logged. Messages below it are
+     * ignored by every logger. By default, every message is logged. Fatal
+     * messages are always logged.
+     *
+     * @throws NullPointerException when level is null
+     * @param level lowest level to log
+     */
+    public static void setLevel(Level level) {
+        if (level == null) {
+            throw new NullPointerException("Null level given");
+        }
+        Logger.level = level;
+    }
+
+    /**
+     * Returns the lowest level of messages that are logged.
+     *
+     * @return lowest level to log
+     */
+    public static Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Returns whether messages of the level are logged. This can be used to
+     * skip work that is only needed to build a message.
+     *
+     * @param level level of messages
+     * @return if messages of that level are logged
+     */
+    public static boolean isEnabled(Level level) {
+        return level.compareTo(Logger.level) >= 0;
+    }
+
+    /**
+     * Returns whether debug messages are logged. Same as
+     * {@code isEnabled(Level.DEBUG)}.
+     *
+     * @return if debug messages are logged
+     */
+    public static boolean isDebugEnabled() {
+        return level == Level.DEBUG;
+    }
+
+    /**
+     * Writes out every log that buffers messages (every {@link Flushable} log),
+     * like {@link BufferedFileLog}. If logging is
+     * {@link #setAsync(int, Overflow) asynchronous}, messages that are waiting
+     * to be sent are sent first. This waits for the file system, so threads
+     * that cannot wait should use {@link #flushAllLater()} instead.
+     */
+    public static void flushAll() {
+        LogRing r = ring;
+        if (r != null) {
+            r.await();
+        }
+        List<Log> flushed = new ArrayList<>();
         for (Logger l : loggers.values()) {
-            l.addLog(log);
+            for (Log log : l.logs) {
+                if (log instanceof Flushable && !flushed.contains(log)) {
+                    flushed.add(log);
+                    try {
+                        ((Flushable) log).flush();
+                    } catch (IOException ex) {
+                        getLogger(Logger.class).error("Could not flush log", ex);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Does {@link #flushAll()} on a background thread, and returns right away.
+     * {@link edu.first.main.GamePeriods} does this at the start of every game
+     * mode, so that changing modes never waits for the file system.
+     */
+    public static void flushAllLater() {
+        synchronized (flushLock) {
+            flushRequested = true;
+            startFlusher();
+            flushLock.notifyAll();
+        }
+    }
+
+    // lock must be held
+    private static void startFlusher() {
+        if (flusher == null) {
+            flusher = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    flushLoop();
+                }
+            }, "Log Flusher");
+            flusher.setDaemon(true);
+            flusher.setPriority(Thread.NORM_PRIORITY - 1);
+            flusher.start();
+        }
+    }
+
+    // starts writing out the log when its messages get old
+    private static void watch(BufferedFileLog log) {
+        buffered.add(log);
+        synchronized (flushLock) {
+            startFlusher();
+            flushLock.notifyAll();
+        }
+    }
+
+    private static void flushLoop() {
+        while (true) {
+            boolean all;
+            synchronized (flushLock) {
+                try {
+                    if (!flushRequested) {
+                        if (buffered.isEmpty()) {
+                            flushLock.wait();
+                        } else {
+                            flushLock.wait(BufferedFileLog.CHECK_PERIOD);
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    getLogger(Logger.class).error("Log flusher interrupted", ex);
+                }
+                all = flushRequested;
+                flushRequested = false;
+            }
+            if (all) {
+                flushAll();
+            }
+            for (BufferedFileLog log : buffered) {
+                log.flushIfOld();
+            }
         }
-        DEFAULT_LOGS.add(log);
     }
 
     // Use static factory instead
-    private Logger(Class<?> origin) {
+    private Logger(Class<?> origin, Log[] logs) {
         this.origin = origin;
+        this.logs = logs;
     }
 
     /**
@@ -94,7 +374,12 @@ public final class Logger {
      * @param log the output to send messages to
      */
     public void addLog(Log log) {
-        logs.add(log);
+        if (log == null) {
+            throw new NullPointerException("Null log given");
+        }
+        synchronized (logsLock) {
+            logs = append(logs, log);
+        }
     }
 
     /**
@@ -104,7 +389,54 @@ public final class Logger {
      * @param msg message to send user
      */
     public void debug(String msg) {
-        send(new Message(Level.DEBUG, origin, msg));
+        if (isEnabled(Level.DEBUG)) {
+            send(Level.DEBUG, msg, 0, 0, 0, 0, null);
+        }
+    }
+
+    /**
+     * Sends a debug message built from a template, where each {@code {}} is
+     * replaced by the value.
+     *
+     * @see #debug(java.lang.String)
+     * @param template message with a {@code {}} for the value
+     * @param a value of the first {@code {}}
+     */
+    public void debug(String template, double a) {
+        if (isEnabled(Level.DEBUG)) {
+            send(Level.DEBUG, template, 1, a, 0, 0, null);
+        }
+    }
+
+    /**
+     * Sends a debug message built from a template, where each {@code {}} is
+     * replaced by the values in order.
+     *
+     * @see #debug(java.lang.String)
+     * @param template message with a {@code {}} for each value
+     * @param a value of the first {@code {}}
+     * @param b value of the second {@code {}}
+     */
+    public void debug(String template, double a, double b) {
+        if (isEnabled(Level.DEBUG)) {
+            send(Level.DEBUG, template, 2, a, b, 0, null);
+        }
+    }
+
+    /**
+     * Sends a debug message built from a template, where each {@code {}} is
+     * replaced by the values in order.
+     *
+     * @see #debug(java.lang.String)
+     * @param template message with a {@code {}} for each value
+     * @param a value of the first {@code {}}
+     * @param b value of the second {@code {}}
+     * @param c value of the third {@code {}}
+     */
+    public void debug(String template, double a, double b, double c) {
+        if (isEnabled(Level.DEBUG)) {
+            send(Level.DEBUG, template, 3, a, b, c, null);
+        }
     }
 
     /**
@@ -114,7 +446,54 @@ public final class Logger {
      * @param msg message to send user
      */
     public void info(String msg) {
-        send(new Message(Level.INFO, origin, msg));
+        if (isEnabled(Level.INFO)) {
+            send(Level.INFO, msg, 0, 0, 0, 0, null);
+        }
+    }
+
+    /**
+     * Sends an info message built from a template, where each {@code {}} is
+     * replaced by the value.
+     *
+     * @see #info(java.lang.String)
+     * @param template message with a {@code {}} for the value
+     * @param a value of the first {@code {}}
+     */
+    public void info(String template, double a) {
+        if (isEnabled(Level.INFO)) {
+            send(Level.INFO, template, 1, a, 0, 0, null);
+        }
+    }
+
+    /**
+     * Sends an info message built from a template, where each {@code {}} is
+     * replaced by the values in order.
+     *
+     * @see #info(java.lang.String)
+     * @param template message with a {@code {}} for each value
+     * @param a value of the first {@code {}}
+     * @param b value of the second {@code {}}
+     */
+    public void info(String template, double a, double b) {
+        if (isEnabled(Level.INFO)) {
+            send(Level.INFO, template, 2, a, b, 0, null);
+        }
+    }
+
+    /**
+     * Sends an info message built from a template, where each {@code {}} is
+     * replaced by the values in order.
+     *
+     * @see #info(java.lang.String)
+     * @param template message with a {@code {}} for each value
+     * @param a value of the first {@code {}}
+     * @param b value of the second {@code {}}
+     * @param c value of the third {@code {}}
+     */
+    public void info(String template, double a, double b, double c) {
+        if (isEnabled(Level.INFO)) {
+            send(Level.INFO, template, 3, a, b, c, null);
+        }
     }
 
     /**
@@ -126,7 +505,54 @@ public final class Logger {
      * @param msg message to send user
      */
     public void warn(String msg) {
-        send(new Message(Level.WARN, origin, msg));
+        if (isEnabled(Level.WARN)) {
+            send(Level.WARN, msg, 0, 0, 0, 0, null);
+        }
+    }
+
+    /**
+     * Sends a warning message built from a template, where each {@code {}} is
+     * replaced by the value.
+     *
+     * @see #warn(java.lang.String)
+     * @param template message with a {@code {}} for the value
+     * @param a value of the first {@code {}}
+     */
+    public void warn(String template, double a) {
+        if (isEnabled(Level.WARN)) {
+            send(Level.WARN, template, 1, a, 0, 0, null);
+        }
+    }
+
+    /**
+     * Sends a warning message built from a template, where each {@code {}} is
+     * replaced by the values in order.
+     *
+     * @see #warn(java.lang.String)
+     * @param template message with a {@code {}} for each value
+     * @param a value of the first {@code {}}
+     * @param b value of the second {@code {}}
+     */
+    public void warn(String template, double a, double b) {
+        if (isEnabled(Level.WARN)) {
+            send(Level.WARN, template, 2, a, b, 0, null);
+        }
+    }
+
+    /**
+     * Sends a warning message built from a template, where each {@code {}} is
+     * replaced by the values in order.
+     *
+     * @see #warn(java.lang.String)
+     * @param template message with a {@code {}} for each value
+     * @param a value of the first {@code {}}
+     * @param b value of the second {@code {}}
+     * @param c value of the third {@code {}}
+     */
+    public void warn(String template, double a, double b, double c) {
+        if (isEnabled(Level.WARN)) {
+            send(Level.WARN, template, 3, a, b, c, null);
+        }
     }
 
     /**
@@ -139,8 +565,9 @@ public final class Logger {
      * @param error the error to print stack trace of
      */
     public void error(String msg, Throwable error) {
-        send(new Message(Level.ERROR, origin, msg));
-        error.printStackTrace();
+        if (isEnabled(Level.ERROR)) {
+            send(Level.ERROR, msg, 0, 0, 0, 0, error);
+        }
     }
 
     /**
@@ -157,18 +584,66 @@ public final class Logger {
      * @param error the error to print stack trace of
      */
     public void fatal(String msg, Throwable error) {
-        send(new Message(Level.FATAL, origin, msg));
-        error.printStackTrace();
+        send(Level.FATAL, msg, 0, 0, 0, 0, error);
+        setSync();
         System.exit(8001);
     }
 
-    private void send(Message msg) {
-        Iterator<Log> i = logs.iterator();
-        while (i.hasNext()) {
-            i.next().send(msg.toString());
+    // count is the amount of values (a, b, c) that replace "{}" in msg
+    private void send(Level level, String msg, int count, double a, double b, double c, Throwable error) {
+        LogRing r = ring;
+        if (r == null || !r.offer(this, level, msg, count, a, b, c, error)) {
+            StringBuilder buffer = buffers.get();
+            buffer.setLength(0);
+            deliver(format(buffer, level, msg, count, a, b, c).toString(), error);
         }
     }
 
+    // sends a formatted message to every log
+    void deliver(String text, Throwable error) {
+        Log[] l = logs;
+        for (int x = 0; x < l.length; x++) {
+            try {
+                l[x].send(text);
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+            }
+        }
+        if (error != null) {
+            error.printStackTrace();
+        }
+    }
+
+    StringBuilder format(StringBuilder buffer, Level l, String m, int count, double a, double b, double c) {
+        buffer.append(DriverstationInfo.getCachedGamePeriod()).append(' ');
+        time(buffer, DriverstationInfo.getCachedTime()).append(" - ");
+        buffer.append('[').append(l).append("] ");
+        buffer.append('@').append(origin.getName()).append(' ');
+        buffer.append(" - ");
+        int start = 0;
+        for (int x = 0; x < count; x++) {
+            int hole = m.indexOf("{}", start);
+            if (hole < 0) {
+                break;
+            }
+            buffer.append(m, start, hole).append(x == 0 ? a : x == 1 ? b : c);
+            start = hole + 2;
+        }
+        buffer.append(m, start, m.length());
+        return buffer;
+    }
+
+    // seconds with three decimals, without formatting a double
+    private static StringBuilder time(StringBuilder buffer, long nanos) {
+        long millis = Math.max(0, nanos) / 1000000;
+        long part = millis % 1000;
+        buffer.append(millis / 1000).append('.');
+        if (part < 100) {
+            buffer.append(part < 10 ? "00" : "0");
+        }
+        return buffer.append(part).append('s');
+    }
+
     /**
      * A log that sends messages to the user in some way. Usually this is a
      * {@link #CONSOLE_LOG console}, {@link FileLog text file} or something
@@ -215,31 +690,283 @@ public final class Logger {
         }
     }
 
-    private static enum Level {
+    /**
+     * An implementation of {@link Log} that logs to a text file, keeping the
+     * file open and buffering messages in memory. {@link FileLog} opens and
+     * closes the file for every message, which is slow and wears out flash
+     * storage when logging many messages per second.
+     *
+     * <p>
+     * Messages are written to the file when the buffer is full, when the oldest
+     * message in the buffer is older than a second (checked by a background
+     * thread, even if no other message is sent), when {@link #flush()} is
+     * called (which {@link Logger#flushAllLater()} does in the background at
+     * the start of every game mode) and when the program exits. Until then,
+     * they are only in memory.
+     *
+     * <p>
+     * When the file grows past its maximum size, it is renamed to
+     * {@code <name>.1} (and older ones to {@code <name>.2} and so on) and a new
+     * file is started.
+     */
+    public static final class BufferedFileLog implements Log, Flushable, Closeable {
 
-        DEBUG, INFO, WARN, ERROR, FATAL;
-    }
+        private static final int BUFFER_SIZE = 16384;
+        private static final long FLUSH_PERIOD = 1000000000;
+        // milliseconds between checks for old messages
+        private static final long CHECK_PERIOD = 250;
+        private static final byte[] NEW_LINE = {'\n'};
+        // uses lock so user can't lock the log accidentally using "this"
+        private final Object lock = new Object();
+        private final File file;
+        private final long maxSize;
+        private final int backups;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private FileChannel channel;
+        private long size;
+        private long oldest;
+        private boolean closed;
 
-    private static final class Message {
+        /**
+         * Constructs the log with the file to log to. The file is never
+         * rotated.
+         *
+         * @throws IOException when the file cannot be opened
+         * @param file which file messages should be logged to
+         */
+        public BufferedFileLog(File file) throws IOException {
+            this(file, Long.MAX_VALUE, 0);
+        }
 
-        private final Level l;
-        private final Class<?> o;
-        private final String m;
+        /**
+         * Constructs the log with the file to log to, which is rotated when it
+         * becomes larger than {@code maxSize}.
+         *
+         * @throws IOException when the file cannot be opened
+         * @throws IllegalArgumentException when maxSize is not positive or
+         * backups is negative
+         * @param file which file messages should be logged to
+         * @param maxSize bytes that the file can grow to before being rotated
+         * @param backups how many old files are kept
+         */
+        public BufferedFileLog(File file, long maxSize, int backups) throws IOException {
+            if (file == null) {
+                throw new NullPointerException("Null file given");
+            }
+            if (maxSize <= 0) {
+                throw new IllegalArgumentException(maxSize + " is not a valid size");
+            }
+            if (backups < 0) {
+                throw new IllegalArgumentException(backups + " is not a valid amount of backups");
+            }
+            this.file = file;
+            this.maxSize = maxSize;
+            this.backups = backups;
+            open();
+            watch(this);
+            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        close();
+                    } catch (IOException ex) {
+                        ex.printStackTrace();
+                    }
+                }
+            }, "File Log Shutdown"));
+        }
 
-        Message(Level l, Class<?> o, String m) {
-            this.l = l;
-            this.o = o;
-            this.m = m;
+        private void open() throws IOException {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            size = channel.size();
         }
 
+        /**
+         * {@inheritDoc}
+         *
+         * Adds the message to the buffer, on its own line.
+         */
         @Override
-        public String toString() {
-            StringBuilder buffer = new StringBuilder();
-            buffer.append(DriverstationInfo.getGamePeriod()).append(" - ");
-            buffer.append('[').append(l).append("] ");
-            buffer.append('@').append(o.getName()).append(' ');
-            buffer.append(" - ").append(m);
-            return buffer.toString();
+        public void send(String msg) {
+            synchronized (lock) {
+                if (closed) {
+                    return;
+                }
+                try {
+                    if (buffer.position() == 0) {
+                        oldest = System.nanoTime();
+                    }
+                    encoder.reset();
+                    CharBuffer chars = CharBuffer.wrap(msg);
+                    CoderResult result;
+                    while ((result = encoder.encode(chars, buffer, true)).isOverflow()) {
+                        write();
+                    }
+                    if (result.isError()) {
+                        result.throwException();
+                    }
+                    if (!buffer.hasRemaining()) {
+                        write();
+                    }
+                    buffer.put(NEW_LINE);
+                    if (System.nanoTime() - oldest >= FLUSH_PERIOD) {
+                        write();
+                    }
+                } catch (IOException ex) {
+                    buffer.clear();
+                    Logger.getLogger(BufferedFileLog.class).error("File log failed to write to file. Ironic.", ex);
+                }
+            }
+        }
+
+        /**
+         * Writes every buffered message to the file.
+         *
+         * @throws IOException when writing causes an error
+         */
+        @Override
+        public void flush() throws IOException {
+            synchronized (lock) {
+                if (!closed) {
+                    write();
+                    channel.force(false);
+                }
+            }
+        }
+
+        // writes the buffer if its oldest message is older than FLUSH_PERIOD
+        private void flushIfOld() {
+            synchronized (lock) {
+                if (closed || buffer.position() == 0 || System.nanoTime() - oldest < FLUSH_PERIOD) {
+                    return;
+                }
+                try {
+                    write();
+                } catch (IOException ex) {
+                    Logger.getLogger(BufferedFileLog.class).error("File log failed to write to file. Ironic.", ex);
+                }
+            }
+        }
+
+        /**
+         * Writes every buffered message and closes the file. Messages that are
+         * sent afterwards are ignored.
+         *
+         * @throws IOException when writing causes an error
+         */
+        @Override
+        public void close() throws IOException {
+            synchronized (lock) {
+                if (!closed) {
+                    try {
+                        write();
+                    } finally {
+                        closed = true;
+                        buffered.remove(this);
+                        channel.close();
+                    }
+                }
+            }
+        }
+
+        // writes the buffer, rotating the file first if it would be too big
+        private void write() throws IOException {
+            IOException rotateError = null;
+            buffer.flip();
+            try {
+                if (size > 0 && size + buffer.remaining() > maxSize) {
+                    try {
+                        rotate();
+                    } catch (IOException ex) {
+                        // keeps appending to the current file, rotation is tried again next time
+                        rotateError = ex;
+                    }
+                }
+                while (buffer.hasRemaining()) {
+                    size += channel.write(buffer);
+                }
+            } finally {
+                buffer.clear();
+            }
+            oldest = System.nanoTime();
+            if (rotateError != null) {
+                throw rotateError;
+            }
+        }
+
+        // the file is always opened again, even if it could not be renamed
+        private void rotate() throws IOException {
+            channel.close();
+            try {
+                if (backups == 0) {
+                    Files.delete(file.toPath());
+                } else {
+                    for (int x = backups - 1; x > 0; x--) {
+                        File older = new File(file.getPath() + '.' + x);
+                        if (older.exists()) {
+                            Files.move(older.toPath(), new File(file.getPath() + '.' + (x + 1)).toPath(),
+                                    StandardCopyOption.REPLACE_EXISTING);
+                        }
+                    }
+                    Files.move(file.toPath(), new File(file.getPath() + ".1").toPath(),
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                open();
+            }
         }
     }
+
+    /**
+     * What to do with messages when the buffer of
+     * {@link #setAsync(int, Overflow) asynchronous} logging is full.
+     */
+    public static enum Overflow {
+
+        /**
+         * Drops new messages until there is space. The amount of messages that
+         * were dropped is logged later.
+         */
+        DROP,
+        /**
+         * Makes the thread that is logging wait until there is space.
+         */
+        BLOCK,
+        /**
+         * Drops most new messages, but makes the thread wait for space for one
+         * message out of every 16, so that some of them are still seen.
+         */
+        SAMPLE;
+    }
+
+    /**
+     * The importance of a message, from least to most important.
+     *
+     * @see #setLevel(Level)
+     */
+    public static enum Level {
+
+        /**
+         * Details that are only useful when finding a problem.
+         */
+        DEBUG,
+        /**
+         * Normal events, like a mode starting.
+         */
+        INFO,
+        /**
+         * Something that is wrong, but does not stop the robot.
+         */
+        WARN,
+        /**
+         * Something that failed.
+         */
+        ERROR,
+        /**
+         * Something that stops the program.
+         */
+        FATAL;
+    }
 }